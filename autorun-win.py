@@ -1,5 +1,6 @@
 # -*- coding: utf-8 -*-
 import datetime
+import gzip
 import itertools
 import os
 import subprocess
@@ -45,6 +46,29 @@ def write_config(template):
     print("write success")
 
 
+def remove_routing_report(output_dir):
+    # 以前の実行のルーティングテーブルを今回の結果として保存しないように、実行前に削除する
+    for report in (f"{output_dir}/routing.jsonl", f"{output_dir}/routing.jsonl.gz"):
+        if os.path.exists(report):
+            os.remove(report)
+
+
+def copy_routing_report(output_dir, dest):
+    # ルーティングテーブル (圧縮出力 (COMPRESSED_OUTPUT) の場合は routing.jsonl.gz)
+    # 従来の result2.txt と同じく各行の先頭に空白を付け、最終行の後に改行を付けない
+    report = f"{output_dir}/routing.jsonl"
+    if os.path.exists(report):
+        src = open(report, encoding="utf-8")
+    elif os.path.exists(report + ".gz"):
+        src = gzip.open(report + ".gz", "rt", encoding="utf-8")
+    else:
+        raise FileNotFoundError(f"{report} was not written by the simulation")
+    with src:
+        lines = src.read().splitlines()
+    with open(dest, "w", encoding="utf-8") as dst:
+        dst.write("\n".join(" " + line for line in lines))
+
+
 def launch_simulator(param_str):
     date = datetime.datetime.today().strftime('%Y%m%d')
     time = datetime.datetime.today().strftime('%H%M%S')
@@ -60,16 +84,10 @@ def launch_simulator(param_str):
         if not os.path.exists(loop_result_dir):
             os.makedirs(loop_result_dir)
 
+        remove_routing_report("simulator/src/dist/output")
         os.system(f"gradle build && gradle :simulator:run > {loop_result_dir}/result.txt")
-        with open(f"{loop_result_dir}/result.txt", encoding="utf-8") as fp:
-            result = fp.read().split("\n")
-        fp.close()
-        result = [line for line in result if line.startswith(";")]
-        result = [line.split(";")[1] for line in result]
         # save to result 2
-        with open(f"{loop_result_dir}/result2.txt", "w", encoding="utf-8") as fp2:
-            fp2.write("\n".join(result))
-        fp2.close()
+        copy_routing_report("simulator/src/dist/output", f"{loop_result_dir}/result2.txt")
         os.system(f"python simtime_parse.py | find \"block_id\" > {loop_result_dir}/result3.txt")
 
     os.system(f"python calc_simuration_time.py --root_directory \"{result_dir}\" > {result_dir}/summary.txt")
@@ -21,8 +21,20 @@ function main(){
     if ! ls ${LOOP_RESULT_DIR}; then
         mkdir -p ${LOOP_RESULT_DIR}
     fi
+    # ルーティングテーブル (圧縮出力 (COMPRESSED_OUTPUT) の場合は routing.jsonl.gz)
+    ROUTING_REPORT="simulator/src/dist/output/routing.jsonl"
+    # 以前の実行のルーティングテーブルを今回の結果として保存しないように、実行前に削除する
+    rm -f ${ROUTING_REPORT} ${ROUTING_REPORT}.gz
     gradle build && gradle :simulator:run > ${LOOP_RESULT_DIR}/result.txt
-    cat ${LOOP_RESULT_DIR}/result.txt | grep "^;" | cut -d ";" -f2 > ${LOOP_RESULT_DIR}/result2.txt
+    # 従来の result2.txt と同じく各行の先頭に空白を付ける
+    if [ -f ${ROUTING_REPORT} ]; then
+        sed 's/^/ /' ${ROUTING_REPORT} > ${LOOP_RESULT_DIR}/result2.txt
+    elif [ -f ${ROUTING_REPORT}.gz ]; then
+        zcat ${ROUTING_REPORT}.gz | sed 's/^/ /' > ${LOOP_RESULT_DIR}/result2.txt
+    else
+        echo "${ROUTING_REPORT} was not written by the simulation" >&2
+        exit 1
+    fi
     python simtime_parse.py | grep block_id > ${LOOP_RESULT_DIR}/result3.txt
 }
 
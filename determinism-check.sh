@@ -0,0 +1,27 @@
+#!/bin/bash
+# 同じシードで2回シミュレーションを実行し、出力ファイルがバイト単位で一致することを確認する
+# Runs the simulation twice with the same seed and checks that the output files, output.json
+# among them, are byte-identical. Usage: ./determinism-check.sh [seed]
+# Exits with status 1 if any output file differs.
+
+SEED="${1:-10}"
+WORK_DIR=$(mktemp -d)
+trap 'rm -rf "${WORK_DIR}"' EXIT
+
+mkdir -p "${WORK_DIR}/classes"
+javac -encoding UTF-8 -d "${WORK_DIR}/classes" $(find simulator/src/main/java -name '*.java') || exit 1
+CLASSPATH="${WORK_DIR}/classes:simulator/src/dist/conf"
+
+for RUN in 1 2
+do
+    mkdir -p "${WORK_DIR}/${RUN}/graph"
+    java -Dfile.encoding=UTF-8 -cp "${CLASSPATH}" simblock.simulator.Main \
+        "${WORK_DIR}/${RUN}" "${SEED}" > "${WORK_DIR}/${RUN}.txt" || exit 1
+done
+
+if diff -r -q "${WORK_DIR}/1" "${WORK_DIR}/2"; then
+    echo "The outputs of the two runs with seed ${SEED} are identical"
+else
+    echo "The outputs of the two runs with seed ${SEED} differ"
+    exit 1
+fi
@@ -1,9 +1,18 @@
+import gzip
 import json
+import os
 from pprint import pprint
 
 # output.jsonの読み込み
 filepath = "simulator/src/dist/output/output.json"
-with open(filepath) as fp:
+# 圧縮出力 (COMPRESSED_OUTPUT) の場合は output.json.gz を読み込む
+# 両方ある場合は、以前の実行で残った古い方ではなく新しい方を読み込む
+gzpath = filepath + ".gz"
+if os.path.exists(gzpath) and (not os.path.exists(filepath)
+                               or os.path.getmtime(gzpath) > os.path.getmtime(filepath)):
+    filepath = gzpath
+opener = gzip.open if filepath.endswith(".gz") else open
+with opener(filepath, "rt") as fp:
     jsondata = json.load(fp)
 
 # jsonは配列なので、配列内の1要素ごとに処理していく
@@ -16,12 +16,15 @@
 
 package simblock.block;
 
+import java.io.Serializable;
 import simblock.node.Node;
 
 /**
  * The representation of a block.
  */
-public class Block {
+public class Block implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   /**
    * The current height of the block.
    */
@@ -47,11 +50,6 @@ public class Block {
    */
   private final int id;
 
-  /**
-   * Latest known block id.
-   */
-  private static int latestId = 0;
-
   /**
    * Instantiates a new Block.
    *
@@ -64,8 +62,7 @@ public class Block {
     this.parent = parent;
     this.minter = minter;
     this.time = time;
-    this.id = latestId;
-    latestId++;
+    this.id = minter.getContext().registerBlock(this);
   }
 
   /**
@@ -116,6 +113,17 @@ public class Block {
     return this.id;
   }
 
+  /**
+   * Uses the unique block id as hash code, so that hash based collections of blocks iterate in
+   * the same order for every run.
+   *
+   * @return the hash code
+   */
+  @Override
+  public int hashCode() {
+    return this.id;
+  }
+
   /**
    * Generates the genesis block. The parent is set to null and the time is set to 0
    *
@@ -16,21 +16,20 @@
 
 package simblock.block;
 
-import static simblock.simulator.Simulator.getSimulatedNodes;
-import static simblock.simulator.Simulator.getTargetInterval;
-
 import java.math.BigInteger;
 import simblock.node.Node;
+import simblock.simulator.Simulator;
 
 
 /**
  * The type Proof of work block.
  */
 public class ProofOfWorkBlock extends Block {
+  private static final long serialVersionUID = 1L;
+
   private final BigInteger difficulty;
   private final BigInteger totalDifficulty;
   private final BigInteger nextDifficulty;
-  private static BigInteger genesisNextDifficulty;
 
   /**
    * Instantiates a new Proof of work block.
@@ -43,16 +42,22 @@ public class ProofOfWorkBlock extends Block {
   public ProofOfWorkBlock(ProofOfWorkBlock parent, Node minter, long time, BigInteger difficulty) {
     super(parent, minter, time);
     this.difficulty = difficulty;
+    this.totalDifficulty = parent.getTotalDifficulty().add(difficulty);
+    // TODO: difficulty adjustment
+    this.nextDifficulty = parent.getNextDifficulty();
+  }
 
-    if (parent == null) {
-      this.totalDifficulty = BigInteger.ZERO.add(difficulty);
-      this.nextDifficulty = ProofOfWorkBlock.genesisNextDifficulty;
-    } else {
-      this.totalDifficulty = parent.getTotalDifficulty().add(difficulty);
-      // TODO: difficulty adjustment
-      this.nextDifficulty = parent.getNextDifficulty();
-    }
-
+  /**
+   * Instantiates a new genesis Proof of work block.
+   *
+   * @param minter         the minter
+   * @param nextDifficulty the difficulty of the next block
+   */
+  private ProofOfWorkBlock(Node minter, BigInteger nextDifficulty) {
+    super(null, minter, 0);
+    this.difficulty = BigInteger.ZERO;
+    this.totalDifficulty = BigInteger.ZERO;
+    this.nextDifficulty = nextDifficulty;
   }
 
   /**
@@ -90,11 +95,12 @@ public class ProofOfWorkBlock extends Block {
    * @return the genesis block
    */
   public static ProofOfWorkBlock genesisBlock(Node minter) {
+    Simulator simulator = minter.getContext().getSimulator();
     long totalMiningPower = 0;
-    for (Node node : getSimulatedNodes()) {
+    for (Node node : simulator.getSimulatedNodes()) {
       totalMiningPower += node.getMiningPower();
     }
-    genesisNextDifficulty = BigInteger.valueOf(totalMiningPower * getTargetInterval());
-    return new ProofOfWorkBlock(null, minter, 0, BigInteger.ZERO);
+    return new ProofOfWorkBlock(
+        minter, BigInteger.valueOf(totalMiningPower * simulator.getTargetInterval()));
   }
 }
@@ -19,21 +19,21 @@ package simblock.block;
 import static simblock.settings.SimulationConfiguration.AVERAGE_COINS;
 import static simblock.settings.SimulationConfiguration.STAKING_REWARD;
 import static simblock.settings.SimulationConfiguration.STDEV_OF_COINS;
-import static simblock.simulator.Main.random;
-import static simblock.simulator.Simulator.getSimulatedNodes;
-import static simblock.simulator.Simulator.getTargetInterval;
 
 import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 import simblock.node.Node;
+import simblock.simulator.Simulator;
 
 /**
  * The type Sample proof of stake block.
  */
 public class SamplePoSBlock extends Block {
+  private static final long serialVersionUID = 1L;
+
   private final Map<Node, Coinage> coinages;
-  private static Map<Node, Coinage> genesisCoinages;
   private final BigInteger difficulty;
   private final BigInteger totalDifficulty;
   private final BigInteger nextDifficulty;
@@ -48,16 +48,33 @@ public class SamplePoSBlock extends Block {
    */
   public SamplePoSBlock(
       SamplePoSBlock parent, Node minter, long time, BigInteger difficulty
+  ) {
+    this(parent, minter, time, difficulty, null);
+  }
+
+  /**
+   * Instantiates a new Sample proof of stake block.
+   *
+   * @param parent          the parent, null for the genesis block
+   * @param minter          the minter
+   * @param time            the time
+   * @param difficulty      the difficulty
+   * @param genesisCoinages the coinages of the nodes, used for the genesis block
+   */
+  private SamplePoSBlock(
+      SamplePoSBlock parent, Node minter, long time, BigInteger difficulty,
+      Map<Node, Coinage> genesisCoinages
   ) {
     super(parent, minter, time);
+    Simulator simulator = minter.getContext().getSimulator();
 
     this.coinages = new HashMap<>();
     if (parent == null) {
-      for (Node node : getSimulatedNodes()) {
+      for (Node node : simulator.getSimulatedNodes()) {
         this.coinages.put(node, genesisCoinages.get(node).clone());
       }
     } else {
-      for (Node node : getSimulatedNodes()) {
+      for (Node node : simulator.getSimulatedNodes()) {
         this.coinages.put(node, parent.getCoinage(node).clone());
         this.coinages.get(node).increaseAge();
       }
@@ -66,7 +83,7 @@ public class SamplePoSBlock extends Block {
     }
 
     BigInteger totalCoinage = BigInteger.ZERO;
-    for (Node node : getSimulatedNodes()) {
+    for (Node node : simulator.getSimulatedNodes()) {
       totalCoinage = totalCoinage.add(this.coinages.get(node).getCoinage());
     }
 
@@ -77,7 +94,7 @@ public class SamplePoSBlock extends Block {
       this.totalDifficulty = parent.getTotalDifficulty().add(difficulty);
     }
     this.nextDifficulty = totalCoinage.multiply(
-            BigInteger.valueOf(getTargetInterval())).divide(BigInteger.valueOf(1000)
+            BigInteger.valueOf(simulator.getTargetInterval())).divide(BigInteger.valueOf(1000)
     );
   }
 
@@ -119,7 +136,7 @@ public class SamplePoSBlock extends Block {
     return this.nextDifficulty;
   }
 
-  private static Coinage genCoinage() {
+  private static Coinage genCoinage(Random random) {
     double r = random.nextGaussian();
     BigInteger coins = BigInteger.valueOf(Math.max((int) (r * STDEV_OF_COINS + AVERAGE_COINS), 0));
     return new Coinage(coins, 1);
@@ -132,10 +149,10 @@ public class SamplePoSBlock extends Block {
    * @return the sample proof of stake block
    */
   public static SamplePoSBlock genesisBlock(Node minter) {
-    genesisCoinages = new HashMap<>();
-    for (Node node : getSimulatedNodes()) {
-      genesisCoinages.put(node, genCoinage());
+    Map<Node, Coinage> genesisCoinages = new HashMap<>();
+    for (Node node : minter.getContext().getSimulator().getSimulatedNodes()) {
+      genesisCoinages.put(node, genCoinage(minter.getContext().getRandom()));
     }
-    return new SamplePoSBlock(null, minter, 0, BigInteger.ZERO);
+    return new SamplePoSBlock(null, minter, 0, BigInteger.ZERO, genesisCoinages);
   }
 }
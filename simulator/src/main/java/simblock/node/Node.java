@@ -22,14 +22,13 @@ import static simblock.settings.SimulationConfiguration.CBR_FAILURE_BLOCK_SIZE_D
 import static simblock.settings.SimulationConfiguration.CBR_FAILURE_RATE_FOR_CHURN_NODE;
 import static simblock.settings.SimulationConfiguration.CBR_FAILURE_RATE_FOR_CONTROL_NODE;
 import static simblock.settings.SimulationConfiguration.COMPACT_BLOCK_SIZE;
-import static simblock.simulator.Main.OUT_JSON_FILE;
 import static simblock.simulator.Network.getBandwidth;
-import static simblock.simulator.Simulator.arriveBlock;
-import static simblock.simulator.Timer.getCurrentTime;
-import static simblock.simulator.Timer.putTask;
-import static simblock.simulator.Timer.removeTask;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
@@ -37,6 +36,9 @@ import java.util.Set;
 import simblock.block.Block;
 import simblock.node.consensus.AbstractConsensusAlgo;
 import simblock.node.routing.AbstractRoutingTable;
+import simblock.simulator.BlockRegistry;
+import simblock.simulator.ForkMetrics;
+import simblock.simulator.SimulationContext;
 import simblock.task.AbstractMessageTask;
 import simblock.task.AbstractMintingTask;
 import simblock.task.BlockMessageTask;
@@ -44,11 +46,19 @@ import simblock.task.CmpctBlockMessageTask;
 import simblock.task.GetBlockTxnMessageTask;
 import simblock.task.InvMessageTask;
 import simblock.task.RecMessageTask;
+import simblock.task.SendNextBlockTask;
 
 /**
  * A class representing a node in the network.
  */
-public class Node {
+public class Node implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The context of the simulation the node belongs to.
+   */
+  private final SimulationContext context;
+
   /**
    * Unique node ID.
    */
@@ -105,8 +115,10 @@ public class Node {
   // TODO verify
   private boolean sendingBlock = false;
 
-  //TODO
-  private final ArrayList<AbstractMessageTask> messageQue = new ArrayList<>();
+  /**
+   * The block requests waiting to be served, one at a time.
+   */
+  private final UploadScheduler uploadScheduler = new UploadScheduler(this);
   // TODO
   private final Set<Block> downloadingBlocks = new HashSet<>();
 
@@ -115,9 +127,16 @@ public class Node {
    */
   private final long processingTime = 2;
 
+  /**
+   * The random number generator of the node, drawn from by the tasks run on the node so the
+   * draws do not depend on the order in which the tasks of different nodes are run.
+   */
+  private final NodeRandom random;
+
   /**
    * Instantiates a new Node.
    *
+   * @param context           the simulation context
    * @param nodeID            the node id
    * @param numConnection     the number of connections a node can have
    * @param region            the region
@@ -128,14 +147,17 @@ public class Node {
    * @param isChurnNode       whether the node causes churn
    */
   public Node(
+      SimulationContext context,
       int nodeID, int numConnection, int region, long miningPower, String routingTableName,
       String consensusAlgoName, boolean useCBR, boolean isChurnNode
   ) {
+    this.context = context;
     this.nodeID = nodeID;
     this.region = region;
     this.miningPower = miningPower;
     this.useCBR = useCBR;
     this.isChurnNode = isChurnNode;
+    this.random = new NodeRandom(context.getRandom().nextLong());
 
     try {
       this.routingTable = (AbstractRoutingTable) Class.forName(routingTableName).getConstructor(
@@ -148,6 +170,45 @@ public class Node {
     }
   }
 
+  /**
+   * Reads a node written by a {@link simblock.simulator.Checkpoint}. The blocks are hashed by
+   * their id, which may not have been read yet when the sets of blocks are filled, so the sets are
+   * rebuilt once the whole checkpoint has been read.
+   *
+   * @param in the input stream
+   * @throws IOException            if the node cannot be read
+   * @throws ClassNotFoundException if a class of the node cannot be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    in.registerValidation(() -> {
+      Block[] orphans = this.orphans.toArray(new Block[0]);
+      this.orphans.clear();
+      Collections.addAll(this.orphans, orphans);
+      Block[] downloadingBlocks = this.downloadingBlocks.toArray(new Block[0]);
+      this.downloadingBlocks.clear();
+      Collections.addAll(this.downloadingBlocks, downloadingBlocks);
+    }, 0);
+  }
+
+  /**
+   * Gets the context of the simulation the node belongs to.
+   *
+   * @return the simulation context
+   */
+  public SimulationContext getContext() {
+    return this.context;
+  }
+
+  /**
+   * Gets the random number generator of the node.
+   *
+   * @return the random
+   */
+  public Random getRandom() {
+    return this.random;
+  }
+
   /**
    * Gets the node id.
    *
@@ -166,6 +227,15 @@ public class Node {
     return this.region;
   }
 
+  /**
+   * Whether the node uses compact block relay.
+   *
+   * @return true if the node uses compact block relay
+   */
+  public boolean usesCBR() {
+    return this.useCBR;
+  }
+
   /**
    * Gets mining power.
    *
@@ -286,14 +356,14 @@ public class Node {
   public void addToChain(Block newBlock) {
     // If the node has been minting
     if (this.mintingTask != null) {
-      removeTask(this.mintingTask);
+      this.context.getTimer().removeTask(this.mintingTask);
       this.mintingTask = null;
     }
     // Update the current block
     this.block = newBlock;
     printAddBlock(newBlock);
     // Observe and handle new block arrival
-    arriveBlock(newBlock, this);
+    this.context.getSimulator().arriveBlock(newBlock, this);
   }
 
   /**
@@ -302,15 +372,8 @@ public class Node {
    * @param newBlock the block to be logged
    */
   private void printAddBlock(Block newBlock) {
-    OUT_JSON_FILE.print("{");
-    OUT_JSON_FILE.print("\"kind\":\"add-block\",");
-    OUT_JSON_FILE.print("\"content\":{");
-    OUT_JSON_FILE.print("\"timestamp\":" + getCurrentTime() + ",");
-    OUT_JSON_FILE.print("\"node-id\":" + this.getNodeID() + ",");
-    OUT_JSON_FILE.print("\"block-id\":" + newBlock.getId());
-    OUT_JSON_FILE.print("}");
-    OUT_JSON_FILE.print("},");
-    OUT_JSON_FILE.flush();
+    this.context.getEventRegistry().blockAdded(
+        this.context.getTimer().getCurrentTime(), this.getNodeID(), newBlock.getId());
   }
 
   /**
@@ -322,8 +385,13 @@ public class Node {
   //TODO check this out later
   public void addOrphans(Block orphanBlock, Block validBlock) {
     if (orphanBlock != validBlock) {
-      this.orphans.add(orphanBlock);
-      this.orphans.remove(validBlock);
+      BlockRegistry blockRegistry = this.context.getBlockRegistry();
+      if (this.orphans.add(orphanBlock)) {
+        this.context.getTimer().runOrdered(() -> blockRegistry.orphanAdded(orphanBlock));
+      }
+      if (this.orphans.remove(validBlock)) {
+        this.context.getTimer().runOrdered(() -> blockRegistry.orphanRemoved(validBlock));
+      }
       if (validBlock == null || orphanBlock.getHeight() > validBlock.getHeight()) {
         this.addOrphans(orphanBlock.getParent(), validBlock);
       } else if (orphanBlock.getHeight() == validBlock.getHeight()) {
@@ -341,7 +409,7 @@ public class Node {
     AbstractMintingTask task = this.consensusAlgo.minting();
     this.mintingTask = task;
     if (task != null) {
-      putTask(task);
+      this.context.getTimer().putTask(task);
     }
   }
 
@@ -362,8 +430,8 @@ public class Node {
         // System.out.println("minor node: "+block.getMinter().getNodeID());
         checkFlg = false;
       }
-      AbstractMessageTask task = new InvMessageTask(this, to, block);
-      putTask(task);
+      AbstractMessageTask task = this.context.getMessageTaskPool().obtainInv(this, to, block);
+      this.context.getTimer().putTask(task);
     }
   }
 
@@ -377,6 +445,10 @@ public class Node {
       if (this.block != null && !this.block.isOnSameChainAs(block)) {
         // If orphan mark orphan
         this.addOrphans(this.block, block);
+        Block oldTip = this.block;
+        ForkMetrics forkMetrics = this.context.getBlockRegistry().getForkMetrics();
+        long time = this.context.getTimer().getCurrentTime();
+        this.context.getTimer().runOrdered(() -> forkMetrics.reorganized(oldTip, block, time));
       }
       // Else add to canonical chain
       this.addToChain(block);
@@ -389,7 +461,7 @@ public class Node {
       // If the block was not valid but was an unknown orphan and is not on the same chain as the
       // current block
       this.addOrphans(block, this.block);
-      arriveBlock(block, this);
+      this.context.getSimulator().arriveBlock(block, this);
     }
   }
 
@@ -405,27 +477,29 @@ public class Node {
       Block block = ((InvMessageTask) message).getBlock();
       if (!this.orphans.contains(block) && !this.downloadingBlocks.contains(block)) {
         if (this.consensusAlgo.isReceivedBlockValid(block, this.block)) {
-          AbstractMessageTask task = new RecMessageTask(this, from, block);
-          putTask(task);
+          AbstractMessageTask task =
+              this.context.getMessageTaskPool().obtainRec(this, from, block);
+          this.context.getTimer().putTask(task);
           downloadingBlocks.add(block);
         } else if (!block.isOnSameChainAs(this.block)) {
           // get new orphan block
-          AbstractMessageTask task = new RecMessageTask(this, from, block);
-          putTask(task);
+          AbstractMessageTask task =
+              this.context.getMessageTaskPool().obtainRec(this, from, block);
+          this.context.getTimer().putTask(task);
           downloadingBlocks.add(block);
         }
       }
     }
 
     if (message instanceof RecMessageTask) {
-      this.messageQue.add((RecMessageTask) message);
+      this.uploadScheduler.add(message);
       if (!sendingBlock) {
         this.sendNextBlockMessage();
       }
     }
 
     if(message instanceof GetBlockTxnMessageTask){
-			this.messageQue.add((GetBlockTxnMessageTask) message);
+			this.uploadScheduler.add(message);
 			if(!sendingBlock){
 				this.sendNextBlockMessage();
 			}
@@ -433,15 +507,15 @@ public class Node {
 
     if(message instanceof CmpctBlockMessageTask){
 			Block block = ((CmpctBlockMessageTask) message).getBlock();
-      Random random = new Random();
       float CBRfailureRate = this.isChurnNode ? CBR_FAILURE_RATE_FOR_CHURN_NODE : CBR_FAILURE_RATE_FOR_CONTROL_NODE;
-			boolean success = random.nextDouble() > CBRfailureRate ? true : false;
+			boolean success = this.random.nextDouble() > CBRfailureRate ? true : false;
 			if(success){
 				downloadingBlocks.remove(block);
 				this.receiveBlock(block);
 			}else{
-				AbstractMessageTask task = new GetBlockTxnMessageTask(this, from, block);
-				putTask(task);
+				AbstractMessageTask task =
+						this.context.getMessageTaskPool().obtainGetBlockTxn(this, from, block);
+				this.context.getTimer().putTask(task);
 			}
 		}
 
@@ -457,7 +531,6 @@ public class Node {
    * Gets block size when the node fails compact block relay.
    */
   private long getFailedBlockSize(){
-		Random random = new Random();
 			if(this.isChurnNode){
 				int index = random.nextInt(CBR_FAILURE_BLOCK_SIZE_DISTRIBUTION_FOR_CHURN_NODE.length);
 				return (long)(BLOCK_SIZE * CBR_FAILURE_BLOCK_SIZE_DISTRIBUTION_FOR_CHURN_NODE[index]);
@@ -470,43 +543,131 @@ public class Node {
   /**
    * Send next block message.
    */
-  // send a block to the sender of the next queued recMessage
+  // send a block to the sender of the next request chosen by the upload scheduler
   public void sendNextBlockMessage() {
-    if (this.messageQue.size() > 0) {
-      Node to = this.messageQue.get(0).getFrom();
+    AbstractMessageTask request = this.uploadScheduler.poll();
+    if (request != null) {
+      Node to = request.getFrom();
       long bandwidth = getBandwidth(this.getRegion(), to.getRegion());
 
       AbstractMessageTask messageTask;
 
-      if(this.messageQue.get(0) instanceof RecMessageTask){
-        Block block = ((RecMessageTask) this.messageQue.get(0)).getBlock();
+      if(request instanceof RecMessageTask){
+        Block block = ((RecMessageTask) request).getBlock();
         // If use compact block relay.
-        if(this.messageQue.get(0).getFrom().useCBR && this.useCBR) {
+        if(to.useCBR && this.useCBR) {
           // Convert bytes to bits and divide by the bandwidth expressed as bit per millisecond, add
           // processing time.
           long delay = COMPACT_BLOCK_SIZE * 8 / (bandwidth / 1000) + processingTime;
 
           // Send compact block message.
-          messageTask = new CmpctBlockMessageTask(this, to, block, delay);
+          messageTask =
+              this.context.getMessageTaskPool().obtainCmpctBlock(this, to, block, delay);
         } else {
           // Else use lagacy protocol.
           long delay = BLOCK_SIZE * 8 / (bandwidth / 1000) + processingTime;
-          messageTask = new BlockMessageTask(this, to, block, delay);
+          messageTask = this.context.getMessageTaskPool().obtainBlock(this, to, block, delay);
         }
-      } else if(this.messageQue.get(0) instanceof GetBlockTxnMessageTask) {
+      } else if(request instanceof GetBlockTxnMessageTask) {
         // Else from requests missing transactions.
-        Block block = ((GetBlockTxnMessageTask) this.messageQue.get(0)).getBlock();
+        Block block = ((GetBlockTxnMessageTask) request).getBlock();
         long delay = getFailedBlockSize() * 8 / (bandwidth / 1000) + processingTime;
-        messageTask = new BlockMessageTask(this, to, block, delay);
+        messageTask = this.context.getMessageTaskPool().obtainBlock(this, to, block, delay);
       } else {
         throw new UnsupportedOperationException();
       }
       
       sendingBlock = true;
-      this.messageQue.remove(0);
-      putTask(messageTask);
+      // The request is not referenced anymore
+      this.context.getMessageTaskPool().release(request);
+      // The next block is sent once the message has been received
+      this.context.getTimer().putTask(new SendNextBlockTask(this, messageTask.getInterval()));
+      this.context.getTimer().putTask(messageTask);
     } else {
       sendingBlock = false;
     }
   }
+
+  /**
+   * Saves the state of the node changed by the tasks run on the node.
+   *
+   * @return the snapshot
+   */
+  public Snapshot snapshot() {
+    return new Snapshot(this);
+  }
+
+  /**
+   * Rolls the node back to a saved state.
+   *
+   * @param snapshot the snapshot
+   */
+  public void restore(Snapshot snapshot) {
+    this.block = snapshot.block;
+    this.orphans.clear();
+    Collections.addAll(this.orphans, snapshot.orphans);
+    this.mintingTask = snapshot.mintingTask;
+    this.sendingBlock = snapshot.sendingBlock;
+    this.uploadScheduler.restore(snapshot.uploadRequests, snapshot.lastPeerId);
+    this.downloadingBlocks.clear();
+    Collections.addAll(this.downloadingBlocks, snapshot.downloadingBlocks);
+    this.random.seed = snapshot.seed;
+  }
+
+  /**
+   * The state of a node changed by the tasks run on the node, saved by the optimistic
+   * {@link simblock.simulator.ParallelTimer} to roll the node back.
+   */
+  public static final class Snapshot {
+    private final Block block;
+    private final Block[] orphans;
+    private final AbstractMintingTask mintingTask;
+    private final boolean sendingBlock;
+    private final AbstractMessageTask[] uploadRequests;
+    private final int lastPeerId;
+    private final Block[] downloadingBlocks;
+    private final long seed;
+
+    private Snapshot(Node node) {
+      this.block = node.block;
+      this.orphans = node.orphans.toArray(new Block[0]);
+      this.mintingTask = node.mintingTask;
+      this.sendingBlock = node.sendingBlock;
+      this.uploadRequests = node.uploadScheduler.toArray();
+      this.lastPeerId = node.uploadScheduler.getLastPeerId();
+      this.downloadingBlocks = node.downloadingBlocks.toArray(new Block[0]);
+      this.seed = node.random.seed;
+    }
+  }
+
+  /**
+   * A {@link Random} drawing the same numbers, whose state can be saved and restored.
+   */
+  private static final class NodeRandom extends Random {
+    private static final long serialVersionUID = 1L;
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    /**
+     * The state of the linear congruential generator, set by the constructor of {@link Random}.
+     */
+    private long seed;
+
+    private NodeRandom(long seed) {
+      super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+      super.setSeed(seed);
+      this.seed = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+      this.seed = (this.seed * MULTIPLIER + ADDEND) & MASK;
+      return (int) (this.seed >>> (48 - bits));
+    }
+  }
 }
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.node;
+
+import static simblock.settings.NetworkConfiguration.LATENCY;
+import static simblock.settings.SimulationConfiguration.UPLOAD_POLICY;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import simblock.task.AbstractMessageTask;
+import simblock.task.RecMessageTask;
+
+/**
+ * The type Upload scheduler queues the block requests received by a node, served one at a time,
+ * and chooses the next one to serve according to the
+ * {@link simblock.settings.SimulationConfiguration#UPLOAD_POLICY}:
+ *
+ * <ul>
+ *   <li>fifo: the requests in the order they were received;</li>
+ *   <li>cbr-first: the requests of the peers using compact block relay first, when the node uses
+ *   it too, as they are served a compact block;</li>
+ *   <li>lowest-latency: the requests of the peers of the region with the lowest average latency
+ *   from the region of the node first;</li>
+ *   <li>round-robin: the requests of the peers in turn, by node id.</li>
+ * </ul>
+ *
+ * <p>The requests are held in a ring buffer in the order they were received, the earliest one
+ * being served among equals.
+ */
+public class UploadScheduler implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The policies choosing the next request to serve.
+   */
+  public enum Policy {
+    FIFO, CBR_FIRST, LOWEST_LATENCY, ROUND_ROBIN
+  }
+
+  private static final Policy POLICY;
+
+  static {
+    switch (UPLOAD_POLICY) {
+      case "fifo":
+        POLICY = Policy.FIFO;
+        break;
+      case "cbr-first":
+        POLICY = Policy.CBR_FIRST;
+        break;
+      case "lowest-latency":
+        POLICY = Policy.LOWEST_LATENCY;
+        break;
+      case "round-robin":
+        POLICY = Policy.ROUND_ROBIN;
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown upload policy " + UPLOAD_POLICY);
+    }
+  }
+
+  /**
+   * The node serving the requests.
+   */
+  private final Node node;
+
+  /**
+   * The ring buffer of the requests, its length a power of two.
+   */
+  private AbstractMessageTask[] requests = new AbstractMessageTask[8];
+
+  /**
+   * The index of the earliest request in the ring buffer.
+   */
+  private int head = 0;
+
+  private int size = 0;
+
+  /**
+   * The id of the peer of the last request served, -1 if none.
+   */
+  private int lastPeerId = -1;
+
+  /**
+   * Instantiates a new Upload scheduler.
+   *
+   * @param node the node serving the requests
+   */
+  public UploadScheduler(Node node) {
+    this.node = node;
+  }
+
+  /**
+   * Queues a request.
+   *
+   * @param request the request
+   */
+  public void add(AbstractMessageTask request) {
+    if (this.size == this.requests.length) {
+      AbstractMessageTask[] requests = new AbstractMessageTask[this.size * 2];
+      for (int i = 0; i < this.size; i++) {
+        requests[i] = this.get(i);
+      }
+      this.requests = requests;
+      this.head = 0;
+    }
+    this.requests[(this.head + this.size) & (this.requests.length - 1)] = request;
+    this.size++;
+  }
+
+  /**
+   * Whether no request is queued.
+   *
+   * @return true if no request is queued
+   */
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  /**
+   * Removes the next request to serve from the queue.
+   *
+   * @return the request, null if no request is queued
+   */
+  public AbstractMessageTask poll() {
+    if (this.size == 0) {
+      return null;
+    }
+    AbstractMessageTask request = this.remove(this.select());
+    this.lastPeerId = request.getFrom().getNodeID();
+    return request;
+  }
+
+  /**
+   * Gets the position in the queue of the next request to serve.
+   */
+  private int select() {
+    int selected = 0;
+    switch (POLICY) {
+      case CBR_FIRST:
+        if (this.node.usesCBR()) {
+          for (int i = 0; i < this.size; i++) {
+            AbstractMessageTask request = this.get(i);
+            if (request instanceof RecMessageTask && request.getFrom().usesCBR()) {
+              return i;
+            }
+          }
+        }
+        break;
+      case LOWEST_LATENCY:
+        long[] latencies = LATENCY[this.node.getRegion()];
+        for (int i = 1; i < this.size; i++) {
+          if (latencies[this.get(i).getFrom().getRegion()]
+              < latencies[this.get(selected).getFrom().getRegion()]) {
+            selected = i;
+          }
+        }
+        break;
+      case ROUND_ROBIN:
+        // The lowest peer id after the last peer served, or else the lowest peer id
+        int selectedPeerId = this.get(0).getFrom().getNodeID();
+        for (int i = 1; i < this.size; i++) {
+          int peerId = this.get(i).getFrom().getNodeID();
+          if (peerId > this.lastPeerId
+              ? selectedPeerId <= this.lastPeerId || peerId < selectedPeerId
+              : selectedPeerId <= this.lastPeerId && peerId < selectedPeerId) {
+            selected = i;
+            selectedPeerId = peerId;
+          }
+        }
+        break;
+      default:
+        break;
+    }
+    return selected;
+  }
+
+  private AbstractMessageTask get(int position) {
+    return this.requests[(this.head + position) & (this.requests.length - 1)];
+  }
+
+  /**
+   * Removes a request from the queue, shifting the requests on the shorter side of it.
+   */
+  private AbstractMessageTask remove(int position) {
+    int mask = this.requests.length - 1;
+    AbstractMessageTask request = this.get(position);
+    if (position < this.size / 2) {
+      for (int i = position; i > 0; i--) {
+        this.requests[(this.head + i) & mask] = this.requests[(this.head + i - 1) & mask];
+      }
+      this.requests[this.head] = null;
+      this.head = (this.head + 1) & mask;
+    } else {
+      for (int i = position; i < this.size - 1; i++) {
+        this.requests[(this.head + i) & mask] = this.requests[(this.head + i + 1) & mask];
+      }
+      this.requests[(this.head + this.size - 1) & mask] = null;
+    }
+    this.size--;
+    return request;
+  }
+
+  /**
+   * Gets the queued requests in the order they were received.
+   *
+   * @return the requests
+   */
+  public AbstractMessageTask[] toArray() {
+    AbstractMessageTask[] requests = new AbstractMessageTask[this.size];
+    for (int i = 0; i < this.size; i++) {
+      requests[i] = this.get(i);
+    }
+    return requests;
+  }
+
+  /**
+   * Gets the id of the peer of the last request served.
+   *
+   * @return the peer id, -1 if none
+   */
+  public int getLastPeerId() {
+    return this.lastPeerId;
+  }
+
+  /**
+   * Replaces the queued requests and the last peer served, to roll the node back.
+   *
+   * @param requests   the requests in the order they were received
+   * @param lastPeerId the id of the peer of the last request served
+   */
+  public void restore(AbstractMessageTask[] requests, int lastPeerId) {
+    Arrays.fill(this.requests, null);
+    this.head = 0;
+    this.size = 0;
+    for (AbstractMessageTask request : requests) {
+      this.add(request);
+    }
+    this.lastPeerId = lastPeerId;
+  }
+}
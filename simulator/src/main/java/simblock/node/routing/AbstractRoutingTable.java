@@ -16,14 +16,18 @@
 
 package simblock.node.routing;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import simblock.node.Node;
+import simblock.simulator.SimulationContext;
 import static simblock.settings.ProposalConfiguration.MAX_OUTBOUND_NUM;
 
 /**
  * An abstraction of the a routing table used by a {@link Node}.
  */
-public abstract class AbstractRoutingTable {
+public abstract class AbstractRoutingTable implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   private final Node selfNode;
   private int numConnection = MAX_OUTBOUND_NUM;
 
@@ -45,6 +49,15 @@ public abstract class AbstractRoutingTable {
     return selfNode;
   }
 
+  /**
+   * Gets the context of the simulation the self node belongs to.
+   *
+   * @return the simulation context
+   */
+  protected SimulationContext getContext() {
+    return selfNode.getContext();
+  }
+
   /**
    * Sets the number of possible active connections.
    *
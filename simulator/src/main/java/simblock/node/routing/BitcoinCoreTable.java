@@ -16,9 +16,6 @@
 
  package simblock.node.routing;
 
- import static simblock.simulator.Main.OUT_JSON_FILE;
- import static simblock.simulator.Simulator.getSimulatedNodes;
- import static simblock.simulator.Timer.getCurrentTime;
  import static simblock.settings.NetworkConfiguration.LATENCY;
  import static simblock.settings.NetworkConfiguration.REGION_DISTRIBUTION;
  import static simblock.settings.ProposalConfiguration.NUM_OF_NODES;
@@ -29,7 +26,6 @@
  import simblock.node.Node;
  
  import java.util.Map;
- import java.util.Random;
  import java.util.stream.Collectors;
  import java.util.HashMap;
  import java.util.Iterator;
@@ -42,6 +38,7 @@
   */
  @SuppressWarnings("unused")
  public class BitcoinCoreTable extends AbstractRoutingTable {
+   private static final long serialVersionUID = 1L;
  
    /**
     * The list of outbound connections.
@@ -85,7 +82,7 @@
      // Nodeを地域の辞書にする
      Map<Integer, ArrayList<Node>> regionMap = new HashMap<Integer, ArrayList<Node>>();
      for (int candidate: candidates) {
-       Node n = getSimulatedNodes().get(candidate);
+       Node n = getContext().getSimulator().getSimulatedNodes().get(candidate);
        int region = n.getRegion();
        ArrayList<Node> regionList = new ArrayList<>();
        if (regionMap.containsKey(region)) {
@@ -103,7 +100,7 @@
     */
    public ArrayList<Integer> proposalMethod(int selectNum) {
     // 遅延時間を元にして選択する地域を選ぶ
-     int nodenum = getSimulatedNodes().size();
+     int nodenum = getContext().getSimulator().getSimulatedNodes().size();
      Node selfNode = getSelfNode();
      int selfRegion = selfNode.getRegion();
      // 地域間の遅延時間
@@ -197,8 +194,7 @@
      // randomで取得した値が、各地域を選ぶ確率の範囲内の場合はそのリージョンを選択する
      ArrayList<Integer> selectedIndexes = new ArrayList<Integer>();
      for(int h = 0; h < selectNum; h++){
-       Random rand = new Random();
-       double randomValue = rand.nextDouble();
+       double randomValue = getContext().getRandom().nextDouble();
        double cumulativeProbability = 0.0;
        for (int i = 0; i < probabilities.size(); i++) {
          cumulativeProbability += probabilities.get(i);
@@ -236,7 +232,7 @@
      );
  
      ArrayList<Integer> candidates = new ArrayList<>();
-     for (int i = 0; i < getSimulatedNodes().size(); i++) {
+     for (int i = 0; i < getContext().getSimulator().getSimulatedNodes().size(); i++) {
        candidates.add(i);
      }
  
@@ -251,8 +247,7 @@
       long[] self_region = LATENCY[selfRegion];
       while (selectedIndexes.size() < FOREGION_REGION_NUM) {
         // ランダムなインデックスを生成
-        Random random = new Random();
-        int randomIndex = random.nextInt(self_region.length);
+        int randomIndex = getContext().getRandom().nextInt(self_region.length);
         if (randomIndex != selfRegion){
           selectedIndexes.add(randomIndex);
         }
@@ -265,19 +260,19 @@
      for(Integer selectedRegion: selectedIndexes){
        ArrayList<Node> regionList = new ArrayList<>(regionMap.get(selectedRegion));
        //選択したリージョンの中からランダムに一つ選ぶ
-       Collections.shuffle(regionList);
+       Collections.shuffle(regionList, getContext().getRandom());
        Node selectedNode = regionList.get(0);
        this.addNeighbor(selectedNode);
      }
  
  
      // オリジナルの処理
-     Collections.shuffle(candidates);
+     Collections.shuffle(candidates, getContext().getRandom());
      int max_connection = this.getNumConnection();
      for (int candidate : candidates) {
        int currentOutboundSize = this.outbound.size();
        if (currentOutboundSize <= max_connection) {
-         Node n = getSimulatedNodes().get(candidate);
+         Node n = getContext().getSimulator().getSimulatedNodes().get(candidate);
          this.addNeighbor(n);
        } else {
          break;
@@ -513,28 +508,16 @@
  
    //TODO add example
    private void printAddLink(Node endNode) {
-     OUT_JSON_FILE.print("{");
-     OUT_JSON_FILE.print("\"kind\":\"add-link\",");
-     OUT_JSON_FILE.print("\"content\":{");
-     OUT_JSON_FILE.print("\"timestamp\":" + getCurrentTime() + ",");
-     OUT_JSON_FILE.print("\"begin-node-id\":" + getSelfNode().getNodeID() + ",");
-     OUT_JSON_FILE.print("\"end-node-id\":" + endNode.getNodeID());
-     OUT_JSON_FILE.print("}");
-     OUT_JSON_FILE.print("},");
-     OUT_JSON_FILE.flush();
+     getContext().getEventRegistry().linkAdded(
+         getContext().getTimer().getCurrentTime(), getSelfNode().getNodeID(),
+         endNode.getNodeID());
    }
  
    //TODO add example
    private void printRemoveLink(Node endNode) {
-     OUT_JSON_FILE.print("{");
-     OUT_JSON_FILE.print("\"kind\":\"remove-link\",");
-     OUT_JSON_FILE.print("\"content\":{");
-     OUT_JSON_FILE.print("\"timestamp\":" + getCurrentTime() + ",");
-     OUT_JSON_FILE.print("\"begin-node-id\":" + getSelfNode().getNodeID() + ",");
-     OUT_JSON_FILE.print("\"end-node-id\":" + endNode.getNodeID());
-     OUT_JSON_FILE.print("}");
-     OUT_JSON_FILE.print("},");
-     OUT_JSON_FILE.flush();
+     getContext().getEventRegistry().linkRemoved(
+         getContext().getTimer().getCurrentTime(), getSelfNode().getNodeID(),
+         endNode.getNodeID());
    }
  
  }
@@ -27,6 +27,11 @@ public class SimulationConfiguration {
    public static final int NUM_OF_NODES = 4500;//50;//300;//600;//800;//6000;
   // public static final int NUM_OF_NODES = 600;//600;//800;//6000;
 
+  /**
+   * The seed of the random number generator of a simulation.
+   */
+  public static final long SEED = 10;
+
   /**
    * The kind of routing table.
    */
@@ -39,6 +44,162 @@ public class SimulationConfiguration {
   // TODO return to PoW
   public static final String ALGO = "simblock.node.consensus.ProofOfWork";
 
+  /**
+   * The implementation of the future event list used by the timer. Either
+   * "simblock.simulator.CalendarEventList" (calendar queue, amortized O(1)) or
+   * "simblock.simulator.HeapEventList" (binary heap, O(log n)).
+   */
+  public static final String FUTURE_EVENT_LIST = "simblock.simulator.CalendarEventList";
+
+  /**
+   * The number of threads running the tasks of a simulation. With more than one thread the nodes
+   * are partitioned by region and the tasks of different regions are run in parallel, with the
+   * same results as a single thread.
+   */
+  public static final int NUM_OF_THREADS = 1;
+
+  /**
+   * The length in milliseconds of the time windows run in parallel. Up to the minimum network
+   * latency the windows are run conservatively, longer windows are run optimistically and the
+   * nodes are rolled back when they receive a message later than they should (unit: millisecond).
+   */
+  public static final long OPTIMISTIC_WINDOW = 0;
+
+  /**
+   * Whether the message tasks and the scheduled tasks wrapping them are recycled once run instead
+   * of being left to the garbage collector. Only used with a single thread, as the parallel timer
+   * keeps the tasks it has run in its logs.
+   */
+  public static final boolean TASK_POOLING = true;
+
+  /**
+   * Whether the pending message tasks are kept as rows of primitive arrays (time, type, node and
+   * block ids) instead of task objects. Only used with a single thread.
+   */
+  public static final boolean EVENT_STORE = false;
+
+  /**
+   * The block height at which the state of the simulation is written to checkpoint.bin in the
+   * output directory, 0 for no checkpoint. Only used with a single thread.
+   */
+  public static final int CHECKPOINT_BLOCK_HEIGHT = 0;
+
+  /**
+   * Whether the events of output.json are recorded as primitive records and formatted and written
+   * by a background thread.
+   */
+  public static final boolean ASYNC_EVENT_WRITER = true;
+
+  /**
+   * Whether the events are written to output.bin as binary records instead of output.json. The
+   * file is converted to output.json by simblock.simulator.EventLogConverter.
+   */
+  public static final boolean BINARY_EVENT_LOG = false;
+
+  /**
+   * Whether output.json and the graph files are written through memory mapped regions of the
+   * files instead of buffered writers. Mapping a region extends a file with up to 32 MB of zero
+   * bytes, which are removed when the file is flushed, at every new block height for output.json,
+   * and when it is closed. A run that ends abnormally leaves them.
+   */
+  public static final boolean MAPPED_OUTPUT = false;
+
+  /**
+   * Whether output.json, static.json, blockList.txt and the graph files are compressed with gzip
+   * by background threads and written with a .gz suffix. The uncompressed or compressed file left
+   * by an earlier run is deleted.
+   */
+  public static final boolean COMPRESSED_OUTPUT = false;
+
+  /**
+   * Whether the add-node events are logged.
+   */
+  public static final boolean LOG_ADD_NODE = true;
+
+  /**
+   * Whether the add-link events are logged.
+   */
+  public static final boolean LOG_ADD_LINK = true;
+
+  /**
+   * Whether the remove-link events are logged.
+   */
+  public static final boolean LOG_REMOVE_LINK = true;
+
+  /**
+   * Whether the add-block events are logged.
+   */
+  public static final boolean LOG_ADD_BLOCK = true;
+
+  /**
+   * Whether the flow-block events are logged.
+   */
+  public static final boolean LOG_FLOW_BLOCK = true;
+
+  /**
+   * The id flow-block events are sampled by, "block" for the block id or "node" for the id of the
+   * receiving node.
+   */
+  public static final String FLOW_BLOCK_SAMPLING_BY = "block";
+
+  /**
+   * The flow-block events are logged for the ids that are multiples of this interval, 1 for all.
+   */
+  public static final int FLOW_BLOCK_SAMPLING_INTERVAL = 1;
+
+  /**
+   * Whether the propagation of every block is computed during the simulation and written to
+   * propagation.csv.
+   */
+  public static final boolean PROPAGATION_STATISTICS = true;
+
+  /**
+   * Whether the snapshots of the network topology are written to graph/topology.txt as one base
+   * graph followed by the links added and removed between snapshots, instead of a full
+   * graph/height.txt file per snapshot.
+   */
+  public static final boolean DELTA_GRAPH = false;
+
+  /**
+   * Whether the routing table of every node is written to routing.jsonl once the network is
+   * constructed.
+   */
+  public static final boolean ROUTING_TABLE_REPORT = true;
+
+  /**
+   * The number of recently minted blocks whose arrivals at the nodes are observed at once. The
+   * oldest block leaves the window to observe a new one beyond, and its propagation times are
+   * added to the summary of the run printed at the end of the simulation.
+   */
+  public static final int OBSERVATION_WINDOW = 11;
+
+  /**
+   * Whether the propagation time of every block to every node is printed to the standard output
+   * when the block leaves the observation window, besides the summary of the run.
+   */
+  public static final boolean PRINT_PROPAGATION = false;
+
+  /**
+   * Whether the delays of the block arrivals are recorded in histograms by region of the minter
+   * and region of the receiving node during the simulation, and written to region-latency.csv and
+   * region-histogram.csv.
+   */
+  public static final boolean REGION_LATENCY_HISTOGRAMS = true;
+
+  /**
+   * The fork metrics are printed to the standard output every this number of blocks during the
+   * simulation, besides at the end; 0 to print them only at the end.
+   */
+  public static final int FORK_METRICS_INTERVAL = 100;
+
+  /**
+   * The policy choosing the next block request served by a node, which serves one at a time:
+   * "fifo" in the order received, "cbr-first" the requests of the peers using compact block relay
+   * first when the node uses it too, "lowest-latency" the requests of the peers of the region with
+   * the lowest average latency first, or "round-robin" the peers in turn by node id.
+   */
+  public static final String UPLOAD_POLICY = "fifo";
+
   /**
    * The expected value of block generation interval. The difficulty of mining is automatically
    * adjusted by this value and the sum of mining power. (unit: millisecond)
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The type Async event listener moves the formatting and the writing of the events off the
+ * simulation thread. Each event is stored as a primitive record, its kind, its timestamps and its
+ * ids, into a preallocated ring; the records are handed in batches to a background thread that
+ * delivers them to the listener it wraps, such as a {@link JsonEventWriter}. When the ring is full
+ * the simulation thread blocks until the background thread catches up, so the memory held by
+ * pending events is bounded.
+ *
+ * <p>{@link #flush()} does not wait for the background thread: the wrapped listener is flushed
+ * once the events recorded before have been delivered. All the events are delivered and the
+ * wrapped listener closed once {@link #close()} returns.
+ *
+ * <p>Only one thread may record events at a time.
+ */
+public class AsyncEventListener implements SimulationEventListener {
+  /**
+   * The number of records handed to the background thread at once.
+   */
+  private static final int BATCH_SIZE = 1 << 10;
+
+  /**
+   * The number of records of the ring, a multiple of the batch size and a power of two.
+   */
+  private static final int CAPACITY = 1 << 16;
+
+  private static final byte NODE_ADDED = 0;
+  private static final byte LINK_ADDED = 1;
+  private static final byte LINK_REMOVED = 2;
+  private static final byte BLOCK_ADDED = 3;
+  private static final byte BLOCK_FLOW = 4;
+  private static final byte SIMULATION_END = 5;
+  private static final byte FLUSH = 6;
+
+  /**
+   * The listener the events are delivered to by the background thread.
+   */
+  private final SimulationEventListener delegate;
+
+  private final byte[] kinds = new byte[CAPACITY];
+
+  /**
+   * The timestamp of each record, the transmission timestamp of a flow-block event.
+   */
+  private final long[] timestamps = new long[CAPACITY];
+
+  /**
+   * The reception timestamp of each flow-block event.
+   */
+  private final long[] receptionTimestamps = new long[CAPACITY];
+
+  /**
+   * The first id of each record, the node id or the id of the node at the beginning of a link.
+   */
+  private final int[] firstIds = new int[CAPACITY];
+
+  /**
+   * The second id of each record, the region id, the block id or the id of the node at the end of
+   * a link.
+   */
+  private final int[] secondIds = new int[CAPACITY];
+
+  /**
+   * The block id of each flow-block event.
+   */
+  private final int[] blockIds = new int[CAPACITY];
+
+  private final ReentrantLock ringLock = new ReentrantLock();
+  private final Condition notEmpty = this.ringLock.newCondition();
+  private final Condition notFull = this.ringLock.newCondition();
+
+  /**
+   * The number of records stored by the simulation thread.
+   */
+  private long recorded = 0;
+
+  /**
+   * The number of records handed to the background thread.
+   */
+  private long published = 0;
+
+  /**
+   * The number of records delivered by the background thread.
+   */
+  private long delivered = 0;
+
+  /**
+   * Whether no more records are handed to the background thread.
+   */
+  private boolean closed = false;
+
+  /**
+   * The error of the background thread, reported to the simulation thread.
+   */
+  private IOException error = null;
+
+  private final Thread thread;
+
+  /**
+   * Instantiates a new Async event listener and starts its background thread.
+   *
+   * @param delegate the listener the events are delivered to
+   */
+  public AsyncEventListener(SimulationEventListener delegate) {
+    this.delegate = delegate;
+    this.thread = new Thread(this::drain, "simblock-event-writer");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  @Override
+  public void nodeAdded(long timestamp, int nodeId, int regionId) {
+    this.record(NODE_ADDED, timestamp, 0, nodeId, regionId, 0);
+  }
+
+  @Override
+  public void linkAdded(long timestamp, int beginNodeId, int endNodeId) {
+    this.record(LINK_ADDED, timestamp, 0, beginNodeId, endNodeId, 0);
+  }
+
+  @Override
+  public void linkRemoved(long timestamp, int beginNodeId, int endNodeId) {
+    this.record(LINK_REMOVED, timestamp, 0, beginNodeId, endNodeId, 0);
+  }
+
+  @Override
+  public void blockAdded(long timestamp, int nodeId, int blockId) {
+    this.record(BLOCK_ADDED, timestamp, 0, nodeId, blockId, 0);
+  }
+
+  @Override
+  public void blockFlow(long transmissionTimestamp, long receptionTimestamp, int beginNodeId,
+                        int endNodeId, int blockId) {
+    this.record(BLOCK_FLOW, transmissionTimestamp, receptionTimestamp, beginNodeId, endNodeId,
+        blockId);
+  }
+
+  @Override
+  public void simulationEnd(long timestamp) {
+    this.record(SIMULATION_END, timestamp, 0, 0, 0, 0);
+  }
+
+  /**
+   * Hands the events recorded so far to the background thread, which flushes the wrapped
+   * listener once they are delivered.
+   *
+   * @throws IOException if the background thread failed
+   */
+  @Override
+  public void flush() throws IOException {
+    this.record(FLUSH, 0, 0, 0, 0, 0);
+    this.publish();
+  }
+
+  /**
+   * Hands the last records to the background thread, waits until all of them are delivered and
+   * closes the wrapped listener.
+   *
+   * @throws IOException if an event could not be written
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.ringLock.lock();
+    try {
+      this.published = this.recorded;
+      this.closed = true;
+      this.notEmpty.signal();
+    } finally {
+      this.ringLock.unlock();
+    }
+    try {
+      this.thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing the events", e);
+    }
+    this.delegate.close();
+    if (this.error != null) {
+      throw this.error;
+    }
+  }
+
+  private void record(byte kind, long timestamp, long receptionTimestamp, int firstId,
+                      int secondId, int blockId) {
+    if (this.closed) {
+      throw new IllegalStateException("Listener closed");
+    }
+    int index = (int) (this.recorded & (CAPACITY - 1));
+    this.kinds[index] = kind;
+    this.timestamps[index] = timestamp;
+    this.receptionTimestamps[index] = receptionTimestamp;
+    this.firstIds[index] = firstId;
+    this.secondIds[index] = secondId;
+    this.blockIds[index] = blockId;
+    this.recorded++;
+    if (this.recorded - this.published == BATCH_SIZE) {
+      try {
+        this.publish();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Hands the recorded events to the background thread and waits until the ring can hold
+   * another batch.
+   *
+   * @throws IOException if the background thread failed
+   */
+  private void publish() throws IOException {
+    this.ringLock.lock();
+    try {
+      this.published = this.recorded;
+      this.notEmpty.signal();
+      while (this.published + BATCH_SIZE - this.delivered > CAPACITY && this.error == null) {
+        this.notFull.awaitUninterruptibly();
+      }
+      if (this.error != null) {
+        throw this.error;
+      }
+    } finally {
+      this.ringLock.unlock();
+    }
+  }
+
+  /**
+   * Delivers the records in order until the listener is closed, run by the background thread.
+   */
+  private void drain() {
+    while (true) {
+      long start;
+      long end;
+      this.ringLock.lock();
+      try {
+        while (this.delivered == this.published && !this.closed) {
+          this.notEmpty.awaitUninterruptibly();
+        }
+        if (this.delivered == this.published) {
+          return;
+        }
+        start = this.delivered;
+        end = this.published;
+      } finally {
+        this.ringLock.unlock();
+      }
+      IOException error = null;
+      try {
+        for (long record = start; record < end; record++) {
+          this.deliver((int) (record & (CAPACITY - 1)));
+        }
+      } catch (IOException e) {
+        error = e;
+      } catch (UncheckedIOException e) {
+        error = e.getCause();
+      }
+      this.ringLock.lock();
+      try {
+        if (error != null) {
+          this.error = error;
+        } else {
+          this.delivered = end;
+        }
+        this.notFull.signal();
+      } finally {
+        this.ringLock.unlock();
+      }
+      if (error != null) {
+        return;
+      }
+    }
+  }
+
+  private void deliver(int index) throws IOException {
+    SimulationEventListener delegate = this.delegate;
+    switch (this.kinds[index]) {
+      case NODE_ADDED:
+        delegate.nodeAdded(this.timestamps[index], this.firstIds[index], this.secondIds[index]);
+        break;
+      case LINK_ADDED:
+        delegate.linkAdded(this.timestamps[index], this.firstIds[index], this.secondIds[index]);
+        break;
+      case LINK_REMOVED:
+        delegate.linkRemoved(this.timestamps[index], this.firstIds[index], this.secondIds[index]);
+        break;
+      case BLOCK_ADDED:
+        delegate.blockAdded(this.timestamps[index], this.firstIds[index], this.secondIds[index]);
+        break;
+      case BLOCK_FLOW:
+        delegate.blockFlow(this.timestamps[index], this.receptionTimestamps[index],
+            this.firstIds[index], this.secondIds[index], this.blockIds[index]);
+        break;
+      case SIMULATION_END:
+        delegate.simulationEnd(this.timestamps[index]);
+        break;
+      default:
+        delegate.flush();
+        break;
+    }
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The type Async event writer moves the writing of a text file, such as its compression, off the
+ * simulation thread. The text is copied into a preallocated ring of fixed-size character slots; a
+ * full slot is handed to a background thread that writes it to the underlying writer in one call,
+ * while the simulation thread goes on filling the next slot. When every slot is waiting to be
+ * written the simulation thread blocks until one is free, so the memory held by pending text is
+ * bounded.
+ *
+ * <p>{@link #flush()} does not wait for the background thread: the slot being filled is handed to
+ * it and the underlying writer is flushed once the slot is written. The text is written in the
+ * order it was given, and all of it is on disk once {@link #close()} returns.
+ *
+ * <p>Only one thread may write at a time.
+ */
+public class AsyncEventWriter extends Writer {
+  /**
+   * The number of characters of a slot.
+   */
+  private static final int SLOT_SIZE = 1 << 16;
+
+  /**
+   * The number of slots of the ring.
+   */
+  private static final int SLOT_COUNT = 64;
+
+  /**
+   * The writer the slots are written to by the background thread.
+   */
+  private final Writer out;
+
+  private final char[][] slots = new char[SLOT_COUNT][SLOT_SIZE];
+
+  /**
+   * The number of characters of each slot handed to the background thread.
+   */
+  private final int[] lengths = new int[SLOT_COUNT];
+
+  /**
+   * Whether the underlying writer is flushed once each slot is written.
+   */
+  private final boolean[] flushes = new boolean[SLOT_COUNT];
+
+  private final ReentrantLock ringLock = new ReentrantLock();
+  private final Condition notEmpty = this.ringLock.newCondition();
+  private final Condition notFull = this.ringLock.newCondition();
+
+  /**
+   * The number of slots handed to the background thread, the slot being filled is the next one.
+   */
+  private long published = 0;
+
+  /**
+   * The number of slots written by the background thread.
+   */
+  private long written = 0;
+
+  /**
+   * The number of characters in the slot being filled.
+   */
+  private int position = 0;
+
+  /**
+   * Whether no more slots are handed to the background thread.
+   */
+  private boolean closed = false;
+
+  /**
+   * The error of the background thread, reported to the simulation thread.
+   */
+  private IOException error = null;
+
+  private final Thread thread;
+
+  /**
+   * Instantiates a new Async event writer and starts its background thread.
+   *
+   * @param out the writer the events are written to
+   */
+  public AsyncEventWriter(Writer out) {
+    this.out = out;
+    this.thread = new Thread(this::drain, "simblock-event-writer");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    while (len > 0) {
+      int count = Math.min(len, SLOT_SIZE - this.position);
+      System.arraycopy(cbuf, off, this.currentSlot(), this.position, count);
+      this.advance(count);
+      off += count;
+      len -= count;
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    while (len > 0) {
+      int count = Math.min(len, SLOT_SIZE - this.position);
+      str.getChars(off, off + count, this.currentSlot(), this.position);
+      this.advance(count);
+      off += count;
+      len -= count;
+    }
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    this.currentSlot()[this.position] = (char) c;
+    this.advance(1);
+  }
+
+  /**
+   * Hands the slot being filled to the background thread, which flushes the underlying writer once
+   * the slot is written.
+   *
+   * @throws IOException if the background thread failed
+   */
+  @Override
+  public void flush() throws IOException {
+    if (this.closed) {
+      throw new IOException("Writer closed");
+    }
+    this.publish(true);
+  }
+
+  /**
+   * Hands the last slot to the background thread, waits until all the slots are written and
+   * closes the underlying writer.
+   *
+   * @throws IOException if an event could not be written
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    if (this.position > 0) {
+      this.publish(false);
+    }
+    this.ringLock.lock();
+    try {
+      this.closed = true;
+      this.notEmpty.signal();
+    } finally {
+      this.ringLock.unlock();
+    }
+    try {
+      this.thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing the events", e);
+    }
+    this.out.close();
+    if (this.error != null) {
+      throw this.error;
+    }
+  }
+
+  private char[] currentSlot() throws IOException {
+    if (this.closed) {
+      throw new IOException("Writer closed");
+    }
+    return this.slots[(int) (this.published % SLOT_COUNT)];
+  }
+
+  private void advance(int count) throws IOException {
+    this.position += count;
+    if (this.position == SLOT_SIZE) {
+      this.publish(false);
+    }
+  }
+
+  /**
+   * Hands the slot being filled to the background thread and waits until the next slot is free.
+   *
+   * @param flush whether the underlying writer is flushed once the slot is written
+   * @throws IOException if the background thread failed
+   */
+  private void publish(boolean flush) throws IOException {
+    this.ringLock.lock();
+    try {
+      this.lengths[(int) (this.published % SLOT_COUNT)] = this.position;
+      this.flushes[(int) (this.published % SLOT_COUNT)] = flush;
+      this.published++;
+      this.position = 0;
+      this.notEmpty.signal();
+      while (this.published - this.written == SLOT_COUNT && this.error == null) {
+        this.notFull.awaitUninterruptibly();
+      }
+      if (this.error != null) {
+        throw this.error;
+      }
+    } finally {
+      this.ringLock.unlock();
+    }
+  }
+
+  /**
+   * Writes the slots in order until the writer is closed, run by the background thread.
+   */
+  private void drain() {
+    while (true) {
+      int slot;
+      this.ringLock.lock();
+      try {
+        while (this.written == this.published && !this.closed) {
+          this.notEmpty.awaitUninterruptibly();
+        }
+        if (this.written == this.published) {
+          return;
+        }
+        slot = (int) (this.written % SLOT_COUNT);
+      } finally {
+        this.ringLock.unlock();
+      }
+      try {
+        this.out.write(this.slots[slot], 0, this.lengths[slot]);
+        if (this.flushes[slot]) {
+          this.out.flush();
+        }
+      } catch (IOException e) {
+        this.ringLock.lock();
+        try {
+          this.error = e;
+          this.notFull.signal();
+        } finally {
+          this.ringLock.unlock();
+        }
+        return;
+      }
+      this.ringLock.lock();
+      try {
+        this.written++;
+        this.notFull.signal();
+      } finally {
+        this.ringLock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The type Binary event log writes the events of a simulation as fixed-width binary records
+ * instead of the JSON text of output.json. The file starts with a header describing the schema:
+ * the magic number, the format version, then for each kind of event its code, its name as used in
+ * output.json and the name and width in bytes of each of its fields. Each record is the code of
+ * its kind followed by its fields as big-endian integers. {@link EventLogConverter} turns the file
+ * into output.json.
+ */
+public class BinaryEventLog implements SimulationEventListener {
+  /**
+   * The magic number at the start of the file, "SBEL".
+   */
+  static final int MAGIC = 0x5342454C;
+
+  /**
+   * The version of the format.
+   */
+  static final int VERSION = 1;
+
+  private static final byte ADD_NODE = 0;
+  private static final byte ADD_LINK = 1;
+  private static final byte REMOVE_LINK = 2;
+  private static final byte ADD_BLOCK = 3;
+  private static final byte FLOW_BLOCK = 4;
+  private static final byte SIMULATION_END = 5;
+
+  /**
+   * The names of the kinds of events, indexed by their code.
+   */
+  private static final String[] KIND_NAMES = {
+      "add-node", "add-link", "remove-link", "add-block", "flow-block", "simulation-end"
+  };
+
+  /**
+   * The names of the fields of each kind of event.
+   */
+  private static final String[][] FIELD_NAMES = {
+      {"timestamp", "node-id", "region-id"},
+      {"timestamp", "begin-node-id", "end-node-id"},
+      {"timestamp", "begin-node-id", "end-node-id"},
+      {"timestamp", "node-id", "block-id"},
+      {"transmission-timestamp", "reception-timestamp", "begin-node-id", "end-node-id",
+          "block-id"},
+      {"timestamp"}
+  };
+
+  /**
+   * The widths in bytes of the fields of each kind of event, 8 for times and 4 for ids.
+   */
+  private static final int[][] FIELD_WIDTHS = {
+      {8, 4, 4},
+      {8, 4, 4},
+      {8, 4, 4},
+      {8, 4, 4},
+      {8, 8, 4, 4, 4},
+      {8}
+  };
+
+  private final DataOutputStream out;
+
+  /**
+   * Instantiates a new Binary event log and writes the header.
+   *
+   * @param file the file
+   * @throws IOException if the file cannot be written
+   */
+  public BinaryEventLog(File file) throws IOException {
+    this.out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+    this.out.writeInt(MAGIC);
+    this.out.writeShort(VERSION);
+    this.out.writeByte(KIND_NAMES.length);
+    for (int kind = 0; kind < KIND_NAMES.length; kind++) {
+      this.out.writeByte(kind);
+      this.out.writeUTF(KIND_NAMES[kind]);
+      this.out.writeByte(FIELD_NAMES[kind].length);
+      for (int field = 0; field < FIELD_NAMES[kind].length; field++) {
+        this.out.writeUTF(FIELD_NAMES[kind][field]);
+        this.out.writeByte(FIELD_WIDTHS[kind][field]);
+      }
+    }
+  }
+
+  @Override
+  public void nodeAdded(long timestamp, int nodeId, int regionId) {
+    try {
+      this.out.writeByte(ADD_NODE);
+      this.out.writeLong(timestamp);
+      this.out.writeInt(nodeId);
+      this.out.writeInt(regionId);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void linkAdded(long timestamp, int beginNodeId, int endNodeId) {
+    this.writeLink(ADD_LINK, timestamp, beginNodeId, endNodeId);
+  }
+
+  @Override
+  public void linkRemoved(long timestamp, int beginNodeId, int endNodeId) {
+    this.writeLink(REMOVE_LINK, timestamp, beginNodeId, endNodeId);
+  }
+
+  private void writeLink(byte kind, long timestamp, int beginNodeId, int endNodeId) {
+    try {
+      this.out.writeByte(kind);
+      this.out.writeLong(timestamp);
+      this.out.writeInt(beginNodeId);
+      this.out.writeInt(endNodeId);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void blockAdded(long timestamp, int nodeId, int blockId) {
+    try {
+      this.out.writeByte(ADD_BLOCK);
+      this.out.writeLong(timestamp);
+      this.out.writeInt(nodeId);
+      this.out.writeInt(blockId);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void blockFlow(long transmissionTimestamp, long receptionTimestamp, int beginNodeId,
+                        int endNodeId, int blockId) {
+    try {
+      this.out.writeByte(FLOW_BLOCK);
+      this.out.writeLong(transmissionTimestamp);
+      this.out.writeLong(receptionTimestamp);
+      this.out.writeInt(beginNodeId);
+      this.out.writeInt(endNodeId);
+      this.out.writeInt(blockId);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void simulationEnd(long timestamp) {
+    try {
+      this.out.writeByte(SIMULATION_END);
+      this.out.writeLong(timestamp);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.out.close();
+  }
+}
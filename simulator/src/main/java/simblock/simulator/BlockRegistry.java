@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import simblock.block.Block;
+
+/**
+ * The type Block registry holds every block of a simulation by its id, with the number of nodes
+ * holding it as an orphan, kept up to date by the nodes while the simulation runs. The height,
+ * minting time and minter are read from the block itself. The {@link ForkMetrics} are updated
+ * along.
+ *
+ * <p>Blocks are only created by the minting tasks, which are run alone and in the order of time,
+ * so the ids follow the minting times and the blocks ordered by id are ordered by time then id:
+ * the block list is written in a single pass over the registry.
+ */
+public class BlockRegistry implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The blocks indexed by their id.
+   */
+  private final ArrayList<Block> blocks = new ArrayList<>();
+
+  /**
+   * The number of nodes holding each block as an orphan, indexed by the block id.
+   */
+  private int[] orphanHolders = new int[64];
+
+  /**
+   * The number of orphans held by all the nodes, the sum of the orphan holders.
+   */
+  private long orphanCount = 0;
+
+  /**
+   * The fork metrics, updated as blocks are registered and orphaned.
+   */
+  private final ForkMetrics forkMetrics = new ForkMetrics();
+
+  /**
+   * Registers a new block and gets its unique id.
+   *
+   * @param block the block
+   * @return the block id
+   */
+  public int register(Block block) {
+    int id = this.blocks.size();
+    this.blocks.add(block);
+    if (id == this.orphanHolders.length) {
+      this.orphanHolders = Arrays.copyOf(this.orphanHolders, id * 2);
+    }
+    this.forkMetrics.blockMinted(block);
+    return id;
+  }
+
+  /**
+   * Gets a block by its id.
+   *
+   * @param blockId the block id
+   * @return the block
+   */
+  public Block getBlock(int blockId) {
+    return this.blocks.get(blockId);
+  }
+
+  /**
+   * Gets the number of blocks.
+   *
+   * @return the number of blocks
+   */
+  public int size() {
+    return this.blocks.size();
+  }
+
+  /**
+   * Records that a node holds a block as an orphan.
+   *
+   * @param block the block added to the orphans of the node
+   */
+  public void orphanAdded(Block block) {
+    if (this.orphanHolders[block.getId()]++ == 0) {
+      this.forkMetrics.blockStale();
+    }
+    this.orphanCount++;
+  }
+
+  /**
+   * Records that a node no longer holds a block as an orphan.
+   *
+   * @param block the block removed from the orphans of the node
+   */
+  public void orphanRemoved(Block block) {
+    if (--this.orphanHolders[block.getId()] == 0) {
+      this.forkMetrics.blockRecovered();
+    }
+    this.orphanCount--;
+  }
+
+  /**
+   * Whether a block is held as an orphan by at least one node.
+   *
+   * @param block the block
+   * @return true if the block is an orphan
+   */
+  public boolean isOrphan(Block block) {
+    return this.orphanHolders[block.getId()] > 0;
+  }
+
+  /**
+   * Gets the number of orphans held by all the nodes.
+   *
+   * @return the orphan count
+   */
+  public long getOrphanCount() {
+    return this.orphanCount;
+  }
+
+  /**
+   * Gets the fork metrics.
+   *
+   * @return the fork metrics
+   */
+  public ForkMetrics getForkMetrics() {
+    return this.forkMetrics;
+  }
+
+  /**
+   * Writes the block list in format:
+   *
+   * <p><em>fork_information : block height : block</em>
+   *
+   * <p>fork_information: One of "OnChain" and "Orphan". "OnChain" denote block is on the chain
+   * ending at the given block, the genesis block excepted. "Orphan" denote block is an orphan
+   * block. The other blocks are not listed.
+   *
+   * @param writer the writer of the block list
+   * @param tip    the last block of the main chain
+   */
+  public void writeBlockList(PrintWriter writer, Block tip) {
+    BitSet onChain = new BitSet(this.blocks.size());
+    for (Block block = tip; block.getParent() != null; block = block.getParent()) {
+      onChain.set(block.getId());
+    }
+    for (Block block : this.blocks) {
+      if (this.isOrphan(block)) {
+        writer.println("Orphan : " + block.getHeight() + " : " + block);
+      } else if (onChain.get(block.getId())) {
+        writer.println("OnChain : " + block.getHeight() + " : " + block);
+      }
+    }
+  }
+}
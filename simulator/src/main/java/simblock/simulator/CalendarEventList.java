@@ -0,0 +1,319 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+/**
+ * The implementation of the {@link FutureEventList} as a calendar queue (R. Brown, "Calendar
+ * queues: a fast O(1) priority queue implementation for the simulation event set problem",
+ * 1988).
+ *
+ * <p>Scheduled tasks are hashed by their scheduled time into buckets ("days") of a fixed width,
+ * each bucket holding a linked list sorted by time. Tasks scheduled for the same time are kept in
+ * the order defined by {@link ScheduledTask#compareTo(ScheduledTask)}, so the bursts of messages
+ * sent at the same millisecond are appended to the tail of a bucket in O(1). Dequeueing scans the
+ * buckets of the current "year" in order.
+ *
+ * <p>The number of buckets follows the number of scheduled tasks and the bucket width is
+ * re-estimated from the separation of the earliest tasks on every resize, which keeps enqueue and
+ * dequeue amortized O(1) for the millisecond timestamps and Pareto distributed message latencies
+ * of the simulation.
+ */
+public class CalendarEventList implements FutureEventList {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The initial number of buckets, must be a power of two.
+   */
+  private static final int INITIAL_BUCKETS = 16;
+
+  /**
+   * The maximum number of tasks sampled to estimate the bucket width.
+   */
+  private static final int MAX_WIDTH_SAMPLES = 25;
+
+  /**
+   * The buckets, each being the head of a sorted linked list.
+   */
+  private ScheduledTask[] buckets;
+
+  /**
+   * The last task of each bucket.
+   */
+  private ScheduledTask[] tails;
+
+  /**
+   * Bit mask used to map a day to a bucket index.
+   */
+  private int mask;
+
+  /**
+   * The width of a bucket in milliseconds.
+   */
+  private long width;
+
+  /**
+   * The number of scheduled tasks.
+   */
+  private int size = 0;
+
+  /**
+   * The index of the bucket the earliest task is searched from.
+   */
+  private int currentBucket;
+
+  /**
+   * The exclusive upper time bound of the current bucket in the current year.
+   */
+  private long bucketTop;
+
+  /**
+   * Resizing is suspended while the bucket width is being sampled.
+   */
+  private boolean resizeEnabled = true;
+
+  /**
+   * Instantiates a new Calendar event list.
+   */
+  public CalendarEventList() {
+    this.init(INITIAL_BUCKETS, 1);
+  }
+
+  private void init(int numBuckets, long width) {
+    this.buckets = new ScheduledTask[numBuckets];
+    this.tails = new ScheduledTask[numBuckets];
+    this.mask = numBuckets - 1;
+    this.width = width;
+    this.size = 0;
+    this.currentBucket = 0;
+    this.bucketTop = width;
+  }
+
+  private int bucketIndex(long time) {
+    return (int) (Math.floorDiv(time, this.width) & this.mask);
+  }
+
+  /**
+   * Moves the current position to the bucket of the provided time.
+   *
+   * @param time the time
+   */
+  private void moveTo(long time) {
+    this.currentBucket = this.bucketIndex(time);
+    this.bucketTop = (Math.floorDiv(time, this.width) + 1) * this.width;
+  }
+
+  private void insert(ScheduledTask scheduledTask) {
+    long time = scheduledTask.getScheduledTime();
+    // The current position must never be past the earliest task
+    if (this.size == 0 || time < this.bucketTop - this.width) {
+      this.moveTo(time);
+    }
+    int index = this.bucketIndex(time);
+    ScheduledTask tail = this.tails[index];
+    if (tail == null || tail.compareTo(scheduledTask) < 0) {
+      // Most tasks are scheduled after the ones already in the bucket
+      if (tail == null) {
+        this.buckets[index] = scheduledTask;
+      } else {
+        tail.next = scheduledTask;
+      }
+      this.tails[index] = scheduledTask;
+    } else {
+      ScheduledTask previous = null;
+      ScheduledTask current = this.buckets[index];
+      while (current.compareTo(scheduledTask) < 0) {
+        previous = current;
+        current = current.next;
+      }
+      scheduledTask.next = current;
+      if (previous == null) {
+        this.buckets[index] = scheduledTask;
+      } else {
+        previous.next = scheduledTask;
+      }
+    }
+    this.size++;
+  }
+
+  /**
+   * Finds the bucket holding the earliest task and moves the current position there.
+   *
+   * @return the bucket index or -1 if the list is empty
+   */
+  private int locate() {
+    if (this.size == 0) {
+      return -1;
+    }
+    int index = this.currentBucket;
+    long top = this.bucketTop;
+    for (int n = 0; n < this.buckets.length; n++) {
+      ScheduledTask head = this.buckets[index];
+      if (head != null && head.getScheduledTime() < top) {
+        this.currentBucket = index;
+        this.bucketTop = top;
+        return index;
+      }
+      index = (index + 1) & this.mask;
+      top += this.width;
+    }
+
+    // No task within a year, search the earliest bucket head directly
+    ScheduledTask earliest = null;
+    for (ScheduledTask head : this.buckets) {
+      if (head != null
+          && (earliest == null || head.getScheduledTime() < earliest.getScheduledTime())) {
+        earliest = head;
+      }
+    }
+    this.moveTo(earliest.getScheduledTime());
+    return this.currentBucket;
+  }
+
+  @Override
+  public void add(ScheduledTask scheduledTask) {
+    this.insert(scheduledTask);
+    if (this.resizeEnabled && this.size > 2 * this.buckets.length) {
+      this.resize(2 * this.buckets.length);
+    }
+  }
+
+  @Override
+  public ScheduledTask peek() {
+    int index = this.locate();
+    return index < 0 ? null : this.buckets[index];
+  }
+
+  @Override
+  public ScheduledTask poll() {
+    int index = this.locate();
+    if (index < 0) {
+      return null;
+    }
+    ScheduledTask head = this.buckets[index];
+    this.buckets[index] = head.next;
+    if (head.next == null) {
+      this.tails[index] = null;
+    }
+    head.next = null;
+    this.size--;
+    this.shrinkIfSparse();
+    return head;
+  }
+
+  @Override
+  public int removeCancelled() {
+    int removed = 0;
+    for (int index = 0; index < this.buckets.length; index++) {
+      ScheduledTask previous = null;
+      ScheduledTask current = this.buckets[index];
+      while (current != null) {
+        ScheduledTask next = current.next;
+        if (current.isCancelled()) {
+          if (previous == null) {
+            this.buckets[index] = next;
+          } else {
+            previous.next = next;
+          }
+          current.next = null;
+          removed++;
+        } else {
+          previous = current;
+        }
+        current = next;
+      }
+      this.tails[index] = previous;
+    }
+    this.size -= removed;
+    this.shrinkIfSparse();
+    return removed;
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  private void shrinkIfSparse() {
+    if (this.resizeEnabled && this.buckets.length > INITIAL_BUCKETS
+        && this.size < this.buckets.length / 2 - 2) {
+      this.resize(this.buckets.length / 2);
+    }
+  }
+
+  /**
+   * Rebuilds the calendar with the provided number of buckets and a newly estimated width.
+   *
+   * @param numBuckets the number of buckets, a power of two
+   */
+  private void resize(int numBuckets) {
+    long newWidth = this.estimateWidth();
+    ScheduledTask[] oldBuckets = this.buckets;
+    this.init(numBuckets, newWidth);
+    for (ScheduledTask head : oldBuckets) {
+      while (head != null) {
+        ScheduledTask next = head.next;
+        head.next = null;
+        this.insert(head);
+        head = next;
+      }
+    }
+  }
+
+  /**
+   * Estimates the bucket width as three times the average separation of the earliest tasks,
+   * ignoring separations larger than twice the average.
+   *
+   * @return the bucket width in milliseconds
+   */
+  private long estimateWidth() {
+    if (this.size < 2) {
+      return this.width;
+    }
+    int numSamples = Math.min(this.size <= 5 ? this.size : 5 + this.size / 10, MAX_WIDTH_SAMPLES);
+    ScheduledTask[] samples = new ScheduledTask[numSamples];
+    this.resizeEnabled = false;
+    for (int i = 0; i < numSamples; i++) {
+      samples[i] = this.poll();
+    }
+    // Put the samples back in front of their buckets to keep the insertion order of ties
+    for (int i = numSamples - 1; i >= 0; i--) {
+      int index = this.bucketIndex(samples[i].getScheduledTime());
+      samples[i].next = this.buckets[index];
+      if (samples[i].next == null) {
+        this.tails[index] = samples[i];
+      }
+      this.buckets[index] = samples[i];
+      this.size++;
+    }
+    this.moveTo(samples[0].getScheduledTime());
+    this.resizeEnabled = true;
+
+    long first = samples[0].getScheduledTime();
+    long last = samples[numSamples - 1].getScheduledTime();
+    double average = (double) (last - first) / (numSamples - 1);
+    double total = 0;
+    int count = 0;
+    for (int i = 1; i < numSamples; i++) {
+      long separation = samples[i].getScheduledTime() - samples[i - 1].getScheduledTime();
+      if (separation <= 2 * average) {
+        total += separation;
+        count++;
+      }
+    }
+    return Math.max(1L, Math.round(3 * total / Math.max(count, 1)));
+  }
+}
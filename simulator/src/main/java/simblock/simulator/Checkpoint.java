@@ -0,0 +1,175 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.URI;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The type Checkpoint is the state of a simulation at a given block height, written to a
+ * compressed binary file and read back in a fresh JVM to run the rest of the simulation, possibly
+ * with different parameters. The state is the whole {@link SimulationContext}: the timer and its
+ * pending tasks, the simulator, the nodes with their routing tables, chains and random number
+ * generators, and the blocks. Only the output files are not part of it; a restored simulation
+ * writes the events after the checkpoint to a new output directory.
+ *
+ * <p>Checkpoints are taken between two batches of tasks and only with a single thread, as the
+ * {@link ParallelTimer} holds threads.
+ */
+public final class Checkpoint implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The stack size of the thread writing and reading the checkpoint. The nodes reference each
+   * other through their routing tables, so the object graph is traversed to a depth proportional
+   * to the number of nodes.
+   */
+  private static final long STACK_SIZE = 1L << 30;
+
+  /**
+   * The simulation context.
+   */
+  private final SimulationContext context;
+
+  /**
+   * The current block height of the simulation.
+   */
+  private final int blockHeight;
+
+  private Checkpoint(SimulationContext context, int blockHeight) {
+    this.context = context;
+    this.blockHeight = blockHeight;
+  }
+
+  /**
+   * Gets the simulation context.
+   *
+   * @return the simulation context
+   */
+  public SimulationContext getContext() {
+    return this.context;
+  }
+
+  /**
+   * Gets the current block height of the simulation.
+   *
+   * @return the block height
+   */
+  public int getBlockHeight() {
+    return this.blockHeight;
+  }
+
+  /**
+   * Writes the state of a simulation to a file.
+   *
+   * @param context     the simulation context
+   * @param blockHeight the current block height of the simulation
+   * @param file        the checkpoint file
+   * @throws IOException if the checkpoint cannot be written
+   */
+  public static void write(SimulationContext context, int blockHeight, File file)
+      throws IOException {
+    if (context.getTimer() instanceof ParallelTimer) {
+      throw new IllegalStateException("Checkpoints can only be taken with a single thread");
+    }
+    Checkpoint checkpoint = new Checkpoint(context, blockHeight);
+    runWithLargeStack(() -> {
+      try (ObjectOutputStream out = new ObjectOutputStream(
+          new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))))) {
+        out.writeObject(checkpoint);
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Reads the state of a simulation from a file.
+   *
+   * @param file       the checkpoint file
+   * @param outFileUri the output directory of the restored simulation
+   * @return the checkpoint
+   * @throws IOException if the checkpoint cannot be read
+   */
+  public static Checkpoint read(File file, URI outFileUri) throws IOException {
+    Checkpoint checkpoint = runWithLargeStack(() -> {
+      try (ObjectInputStream in = new ObjectInputStream(
+          new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+        return (Checkpoint) in.readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Incompatible checkpoint " + file, e);
+      }
+    });
+    checkpoint.context.resume(outFileUri);
+    return checkpoint;
+  }
+
+  /**
+   * An action that may throw an {@link IOException}.
+   *
+   * @param <T> the type of the result
+   */
+  private interface IoAction<T> {
+    T run() throws IOException;
+  }
+
+  /**
+   * Runs an action on a thread with a large stack and waits for its result.
+   *
+   * @param action the action
+   * @param <T>    the type of the result
+   * @return the result
+   * @throws IOException if the action failed
+   */
+  private static <T> T runWithLargeStack(IoAction<T> action) throws IOException {
+    Object[] result = new Object[1];
+    Throwable[] error = new Throwable[1];
+    Thread thread = new Thread(null, () -> {
+      try {
+        result[0] = action.run();
+      } catch (IOException | RuntimeException | Error e) {
+        error[0] = e;
+      }
+    }, "simblock-checkpoint", STACK_SIZE);
+    thread.start();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while processing the checkpoint", e);
+    }
+    if (error[0] instanceof IOException) {
+      throw (IOException) error[0];
+    } else if (error[0] instanceof RuntimeException) {
+      throw (RuntimeException) error[0];
+    } else if (error[0] != null) {
+      throw (Error) error[0];
+    }
+    @SuppressWarnings("unchecked")
+    T value = (T) result[0];
+    return value;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.settings.SimulationConfiguration.FLOW_BLOCK_SAMPLING_BY;
+import static simblock.settings.SimulationConfiguration.FLOW_BLOCK_SAMPLING_INTERVAL;
+import static simblock.settings.SimulationConfiguration.LOG_ADD_BLOCK;
+import static simblock.settings.SimulationConfiguration.LOG_ADD_LINK;
+import static simblock.settings.SimulationConfiguration.LOG_ADD_NODE;
+import static simblock.settings.SimulationConfiguration.LOG_FLOW_BLOCK;
+import static simblock.settings.SimulationConfiguration.LOG_REMOVE_LINK;
+
+import java.io.IOException;
+
+/**
+ * The type Event filter passes to a listener, typically an output writer, only the events
+ * enabled by the LOG_ constants of {@link simblock.settings.SimulationConfiguration}, before
+ * anything of the event is formatted. The flow-block events can besides be sampled
+ * deterministically: one block in every
+ * {@link simblock.settings.SimulationConfiguration#FLOW_BLOCK_SAMPLING_INTERVAL} has all its
+ * transmissions passed, or one receiving node in every interval has all the blocks it receives
+ * passed, so every run with the same parameters logs the same events.
+ */
+public class EventFilter implements SimulationEventListener {
+  /**
+   * Whether the flow-block events are sampled by the id of the receiving node, otherwise by the
+   * block id.
+   */
+  private static final boolean SAMPLING_BY_NODE;
+
+  static {
+    switch (FLOW_BLOCK_SAMPLING_BY) {
+      case "block":
+        SAMPLING_BY_NODE = false;
+        break;
+      case "node":
+        SAMPLING_BY_NODE = true;
+        break;
+      default:
+        throw new IllegalArgumentException(
+            "Unknown flow-block sampling " + FLOW_BLOCK_SAMPLING_BY);
+    }
+    if (FLOW_BLOCK_SAMPLING_INTERVAL < 1) {
+      throw new IllegalArgumentException(
+          "Invalid flow-block sampling interval " + FLOW_BLOCK_SAMPLING_INTERVAL);
+    }
+  }
+
+  /**
+   * The listener receiving the events passed.
+   */
+  private final SimulationEventListener delegate;
+
+  /**
+   * Instantiates a new Event filter.
+   *
+   * @param delegate the listener receiving the events passed
+   */
+  public EventFilter(SimulationEventListener delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void nodeAdded(long timestamp, int nodeId, int regionId) {
+    if (LOG_ADD_NODE) {
+      this.delegate.nodeAdded(timestamp, nodeId, regionId);
+    }
+  }
+
+  @Override
+  public void linkAdded(long timestamp, int beginNodeId, int endNodeId) {
+    if (LOG_ADD_LINK) {
+      this.delegate.linkAdded(timestamp, beginNodeId, endNodeId);
+    }
+  }
+
+  @Override
+  public void linkRemoved(long timestamp, int beginNodeId, int endNodeId) {
+    if (LOG_REMOVE_LINK) {
+      this.delegate.linkRemoved(timestamp, beginNodeId, endNodeId);
+    }
+  }
+
+  @Override
+  public void blockAdded(long timestamp, int nodeId, int blockId) {
+    if (LOG_ADD_BLOCK) {
+      this.delegate.blockAdded(timestamp, nodeId, blockId);
+    }
+  }
+
+  @Override
+  public void blockFlow(long transmissionTimestamp, long receptionTimestamp, int beginNodeId,
+                        int endNodeId, int blockId) {
+    if (LOG_FLOW_BLOCK
+        && (SAMPLING_BY_NODE ? endNodeId : blockId) % FLOW_BLOCK_SAMPLING_INTERVAL == 0) {
+      this.delegate.blockFlow(
+          transmissionTimestamp, receptionTimestamp, beginNodeId, endNodeId, blockId);
+    }
+  }
+
+  @Override
+  public void simulationEnd(long timestamp) {
+    this.delegate.simulationEnd(timestamp);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.delegate.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.delegate.close();
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The type Event log converter turns a {@link BinaryEventLog} file into the output.json format
+ * read by the visualizer. The records are read and written one at a time, following the schema
+ * in the header of the file, so the memory used does not depend on the size of the log.
+ *
+ * <p>Usage: {@code EventLogConverter <output.bin> <output.json>}
+ */
+public final class EventLogConverter {
+  private EventLogConverter() {
+  }
+
+  /**
+   * The entry point.
+   *
+   * @param args the binary event log and the JSON file to write
+   * @throws IOException if a file cannot be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: EventLogConverter <output.bin> <output.json>");
+      System.exit(1);
+    }
+    convert(new File(args[0]), new File(args[1]));
+  }
+
+  /**
+   * Converts a binary event log to JSON.
+   *
+   * @param binaryFile the binary event log
+   * @param jsonFile   the JSON file to write
+   * @throws IOException if a file cannot be read or written, or is not a binary event log
+   */
+  public static void convert(File binaryFile, File jsonFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(binaryFile), 1 << 16));
+         Writer out = new BufferedWriter(new FileWriter(jsonFile), 1 << 16)) {
+      if (in.readInt() != BinaryEventLog.MAGIC) {
+        throw new IOException(binaryFile + " is not a binary event log");
+      }
+      int version = in.readUnsignedShort();
+      if (version != BinaryEventLog.VERSION) {
+        throw new IOException("Unsupported binary event log version " + version);
+      }
+
+      // Read the schema
+      int kindCount = in.readUnsignedByte();
+      String[] kindNames = new String[kindCount];
+      String[][] fieldNames = new String[kindCount][];
+      int[][] fieldWidths = new int[kindCount][];
+      for (int i = 0; i < kindCount; i++) {
+        int kind = in.readUnsignedByte();
+        kindNames[kind] = in.readUTF();
+        int fieldCount = in.readUnsignedByte();
+        fieldNames[kind] = new String[fieldCount];
+        fieldWidths[kind] = new int[fieldCount];
+        for (int field = 0; field < fieldCount; field++) {
+          fieldNames[kind][field] = in.readUTF();
+          fieldWidths[kind][field] = in.readUnsignedByte();
+        }
+      }
+
+      out.write("[");
+      boolean first = true;
+      int kind;
+      while ((kind = in.read()) >= 0) {
+        if (!first) {
+          out.write(",");
+        }
+        first = false;
+        out.write("{\"kind\":\"");
+        out.write(kindNames[kind]);
+        out.write("\",\"content\":{");
+        for (int field = 0; field < fieldNames[kind].length; field++) {
+          if (field > 0) {
+            out.write(",");
+          }
+          out.write("\"");
+          out.write(fieldNames[kind][field]);
+          out.write("\":");
+          long value = fieldWidths[kind][field] == 8 ? in.readLong() : in.readInt();
+          out.write(Long.toString(value));
+        }
+        out.write("}}");
+      }
+      out.write("]");
+    } catch (EOFException e) {
+      throw new IOException("Truncated binary event log " + binaryFile, e);
+    }
+  }
+}
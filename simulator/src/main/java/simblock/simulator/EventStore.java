@@ -0,0 +1,328 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import simblock.block.Block;
+import simblock.node.Node;
+import simblock.task.AbstractMessageTask;
+import simblock.task.BlockMessageTask;
+import simblock.task.CmpctBlockMessageTask;
+import simblock.task.GetBlockTxnMessageTask;
+import simblock.task.InvMessageTask;
+import simblock.task.MessageTaskPool;
+import simblock.task.RecMessageTask;
+import simblock.task.Task;
+
+/**
+ * The type Event store keeps the pending message tasks of the {@link Timer} as rows of primitive
+ * arrays instead of objects: the scheduled time, the sequence number, a type code, the ids of the
+ * sending and receiving nodes and of the block, and the message interval. The rows are ordered by
+ * a binary heap of row indices comparing the time and sequence arrays, so neither the ordering
+ * nor the memory held by the pending messages depend on the task and node objects.
+ *
+ * <p>A message task is encoded into a row when scheduled and returned to the
+ * {@link MessageTaskPool}. It is decoded back into a task, dispatching on the type code, when the
+ * row reaches the head of the store. Tasks of other types are kept in the future event list of the
+ * timer, and the timer merges the two by time and sequence number, so the order of execution is
+ * the same as with the future event list only.
+ *
+ * <p>Stored message tasks cannot be removed from the timer.
+ */
+public class EventStore implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The initial number of rows.
+   */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private static final byte INV_MESSAGE = 1;
+  private static final byte REC_MESSAGE = 2;
+  private static final byte GET_BLOCK_TXN_MESSAGE = 3;
+  private static final byte CMPCT_BLOCK_MESSAGE = 4;
+  private static final byte BLOCK_MESSAGE = 5;
+
+  /**
+   * The simulation context resolving the node and block ids.
+   */
+  private final SimulationContext context;
+
+  private long[] times = new long[INITIAL_CAPACITY];
+  private long[] sequences = new long[INITIAL_CAPACITY];
+  private byte[] types = new byte[INITIAL_CAPACITY];
+  private int[] fromIds = new int[INITIAL_CAPACITY];
+  private int[] toIds = new int[INITIAL_CAPACITY];
+  private int[] blockIds = new int[INITIAL_CAPACITY];
+
+  /**
+   * The interval of the block messages, used for logging the transmission time.
+   */
+  private long[] intervals = new long[INITIAL_CAPACITY];
+
+  /**
+   * The binary heap of the indices of the pending rows.
+   */
+  private int[] heap = new int[INITIAL_CAPACITY];
+
+  /**
+   * The number of pending rows.
+   */
+  private int size = 0;
+
+  /**
+   * The indices of the rows that are not pending, reused by {@link #add(Task, long, long)}.
+   */
+  private int[] freeRows = new int[INITIAL_CAPACITY];
+
+  /**
+   * The number of free rows.
+   */
+  private int freeCount = 0;
+
+  /**
+   * The number of rows ever used, the next row to use when no row is free.
+   */
+  private int rowCount = 0;
+
+  /**
+   * Instantiates a new Event store.
+   *
+   * @param context the simulation context
+   */
+  public EventStore(SimulationContext context) {
+    this.context = context;
+  }
+
+  /**
+   * Gets the type code of a task.
+   *
+   * @param task the task
+   * @return the type code or 0 if the task cannot be stored
+   */
+  private static byte getType(Task task) {
+    Class<?> type = task.getClass();
+    if (type == InvMessageTask.class) {
+      return INV_MESSAGE;
+    } else if (type == RecMessageTask.class) {
+      return REC_MESSAGE;
+    } else if (type == GetBlockTxnMessageTask.class) {
+      return GET_BLOCK_TXN_MESSAGE;
+    } else if (type == CmpctBlockMessageTask.class) {
+      return CMPCT_BLOCK_MESSAGE;
+    } else if (type == BlockMessageTask.class) {
+      return BLOCK_MESSAGE;
+    }
+    return 0;
+  }
+
+  /**
+   * Checks whether the task can be stored as a row.
+   *
+   * @param task the task
+   * @return true if the task is one of the message tasks
+   */
+  public boolean accepts(Task task) {
+    return getType(task) != 0;
+  }
+
+  /**
+   * Stores a message task as a row and returns the task object to the pool.
+   *
+   * @param task     the task, accepted by {@link #accepts(Task)}
+   * @param time     the time in milliseconds
+   * @param sequence the insertion sequence number
+   */
+  public void add(Task task, long time, long sequence) {
+    int row = this.allocateRow();
+    AbstractMessageTask message = (AbstractMessageTask) task;
+    byte type = getType(task);
+    this.times[row] = time;
+    this.sequences[row] = sequence;
+    this.types[row] = type;
+    this.fromIds[row] = message.getFrom().getNodeID();
+    this.toIds[row] = message.getTo().getNodeID();
+    switch (type) {
+      case INV_MESSAGE:
+        this.blockIds[row] = ((InvMessageTask) task).getBlock().getId();
+        this.intervals[row] = 0;
+        break;
+      case REC_MESSAGE:
+        this.blockIds[row] = ((RecMessageTask) task).getBlock().getId();
+        this.intervals[row] = 0;
+        break;
+      case GET_BLOCK_TXN_MESSAGE:
+        this.blockIds[row] = ((GetBlockTxnMessageTask) task).getBlock().getId();
+        this.intervals[row] = 0;
+        break;
+      case CMPCT_BLOCK_MESSAGE:
+        this.blockIds[row] = ((CmpctBlockMessageTask) task).getBlock().getId();
+        this.intervals[row] = task.getInterval();
+        break;
+      default:
+        this.blockIds[row] = ((BlockMessageTask) task).getBlock().getId();
+        this.intervals[row] = task.getInterval();
+        break;
+    }
+    this.context.getMessageTaskPool().release(message);
+    this.push(row);
+  }
+
+  /**
+   * Gets the row to be run next.
+   *
+   * @return the row index or -1 if the store is empty
+   */
+  public int peek() {
+    return this.size == 0 ? -1 : this.heap[0];
+  }
+
+  /**
+   * Removes the row to be run next and decodes it.
+   *
+   * @return the message task
+   */
+  public Task poll() {
+    int row = this.heap[0];
+    Task task = this.getTask(row);
+    this.size--;
+    if (this.size > 0) {
+      this.heap[0] = this.heap[this.size];
+      this.siftDown(0);
+    }
+    if (this.freeCount == this.freeRows.length) {
+      this.freeRows = Arrays.copyOf(this.freeRows, this.freeRows.length * 2);
+    }
+    this.freeRows[this.freeCount++] = row;
+    return task;
+  }
+
+  /**
+   * Gets the scheduled time of a row.
+   *
+   * @param row the row index
+   * @return the time in milliseconds
+   */
+  public long getTime(int row) {
+    return this.times[row];
+  }
+
+  /**
+   * Gets the sequence number of a row.
+   *
+   * @param row the row index
+   * @return the sequence number
+   */
+  public long getSequence(int row) {
+    return this.sequences[row];
+  }
+
+  /**
+   * Decodes a row into a message task obtained from the pool.
+   *
+   * @param row the row index
+   * @return the message task
+   */
+  public Task getTask(int row) {
+    MessageTaskPool pool = this.context.getMessageTaskPool();
+    Simulator simulator = this.context.getSimulator();
+    Node from = simulator.getNode(this.fromIds[row]);
+    Node to = simulator.getNode(this.toIds[row]);
+    Block block = this.context.getBlock(this.blockIds[row]);
+    switch (this.types[row]) {
+      case INV_MESSAGE:
+        return pool.obtainInv(from, to, block);
+      case REC_MESSAGE:
+        return pool.obtainRec(from, to, block);
+      case GET_BLOCK_TXN_MESSAGE:
+        return pool.obtainGetBlockTxn(from, to, block);
+      case CMPCT_BLOCK_MESSAGE:
+        return pool.obtainCmpctBlockWithInterval(from, to, block, this.intervals[row]);
+      case BLOCK_MESSAGE:
+        return pool.obtainBlockWithInterval(from, to, block, this.intervals[row]);
+      default:
+        throw new IllegalStateException("Unknown event type " + this.types[row]);
+    }
+  }
+
+  /**
+   * Gets the number of pending rows.
+   *
+   * @return the size
+   */
+  public int size() {
+    return this.size;
+  }
+
+  private int allocateRow() {
+    if (this.freeCount > 0) {
+      return this.freeRows[--this.freeCount];
+    }
+    if (this.rowCount == this.times.length) {
+      int capacity = this.times.length * 2;
+      this.times = Arrays.copyOf(this.times, capacity);
+      this.sequences = Arrays.copyOf(this.sequences, capacity);
+      this.types = Arrays.copyOf(this.types, capacity);
+      this.fromIds = Arrays.copyOf(this.fromIds, capacity);
+      this.toIds = Arrays.copyOf(this.toIds, capacity);
+      this.blockIds = Arrays.copyOf(this.blockIds, capacity);
+      this.intervals = Arrays.copyOf(this.intervals, capacity);
+      this.heap = Arrays.copyOf(this.heap, capacity);
+    }
+    return this.rowCount++;
+  }
+
+  private boolean before(int row, int other) {
+    return this.times[row] < this.times[other]
+        || this.times[row] == this.times[other] && this.sequences[row] < this.sequences[other];
+  }
+
+  private void push(int row) {
+    int index = this.size++;
+    while (index > 0) {
+      int parentIndex = (index - 1) >>> 1;
+      int parent = this.heap[parentIndex];
+      if (!this.before(row, parent)) {
+        break;
+      }
+      this.heap[index] = parent;
+      index = parentIndex;
+    }
+    this.heap[index] = row;
+  }
+
+  private void siftDown(int index) {
+    int row = this.heap[index];
+    int half = this.size >>> 1;
+    while (index < half) {
+      int childIndex = 2 * index + 1;
+      int child = this.heap[childIndex];
+      int rightIndex = childIndex + 1;
+      if (rightIndex < this.size && this.before(this.heap[rightIndex], child)) {
+        childIndex = rightIndex;
+        child = this.heap[childIndex];
+      }
+      if (!this.before(child, row)) {
+        break;
+      }
+      this.heap[index] = child;
+      index = childIndex;
+    }
+    this.heap[index] = row;
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import simblock.block.Block;
+
+/**
+ * The type Fork metrics counts the forks of the chain while the simulation runs, updated by the
+ * {@link BlockRegistry} as blocks are minted and orphaned and by the nodes as they switch chains:
+ *
+ * <ul>
+ *   <li>forks: the heights at which more than one block has been minted;</li>
+ *   <li>stale blocks: the blocks currently held as an orphan by at least one node, and the stale
+ *   rate, their share of the minted blocks;</li>
+ *   <li>reorganizations: the number of times a node switched to another chain, with the
+ *   distribution of their depths, the number of blocks of the chain abandoned;</li>
+ *   <li>time to resolution: for each reorganization, the time from the minting of the first block
+ *   abandoned to the switch, in milliseconds.</li>
+ * </ul>
+ */
+public class ForkMetrics implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The number of blocks minted at each height, the genesis block excepted.
+   */
+  private int[] blocksByHeight = new int[64];
+
+  private long mintedBlocks = 0;
+
+  private long forks = 0;
+
+  private long staleBlocks = 0;
+
+  private long reorganizations = 0;
+
+  /**
+   * The number of reorganizations by depth.
+   */
+  private long[] depths = new long[8];
+
+  private final LatencySketch resolutionTimes = new LatencySketch();
+
+  /**
+   * Records the minting of a block.
+   *
+   * @param block the block
+   */
+  public void blockMinted(Block block) {
+    int height = block.getHeight();
+    if (height == 0) {
+      return;
+    }
+    if (height >= this.blocksByHeight.length) {
+      this.blocksByHeight = Arrays.copyOf(
+          this.blocksByHeight, Math.max(height + 1, this.blocksByHeight.length * 2));
+    }
+    this.mintedBlocks++;
+    if (++this.blocksByHeight[height] == 2) {
+      this.forks++;
+    }
+  }
+
+  /**
+   * Records that a block became stale, held as an orphan by a node while no node did.
+   */
+  public void blockStale() {
+    this.staleBlocks++;
+  }
+
+  /**
+   * Records that a block is no longer stale, no node holding it as an orphan anymore.
+   */
+  public void blockRecovered() {
+    this.staleBlocks--;
+  }
+
+  /**
+   * Records the switch of a node from a chain to another one.
+   *
+   * @param oldTip the last block of the chain abandoned
+   * @param newTip the last block of the chain adopted
+   * @param time   the time of the switch
+   */
+  public void reorganized(Block oldTip, Block newTip, long time) {
+    // Finds the last common block of both chains
+    Block oldBlock = oldTip;
+    Block newBlock = newTip;
+    while (oldBlock.getHeight() > newBlock.getHeight()) {
+      oldBlock = oldBlock.getParent();
+    }
+    while (newBlock.getHeight() > oldBlock.getHeight()) {
+      newBlock = newBlock.getParent();
+    }
+    Block firstAbandoned = oldTip;
+    while (oldBlock != newBlock) {
+      firstAbandoned = oldBlock;
+      oldBlock = oldBlock.getParent();
+      newBlock = newBlock.getParent();
+    }
+    int depth = oldTip.getHeight() - oldBlock.getHeight();
+    if (depth >= this.depths.length) {
+      this.depths = Arrays.copyOf(this.depths, Math.max(depth + 1, this.depths.length * 2));
+    }
+    this.depths[depth]++;
+    this.reorganizations++;
+    if (depth > 0) {
+      this.resolutionTimes.add(time - firstAbandoned.getTime());
+    }
+  }
+
+  /**
+   * Gets the number of heights at which more than one block has been minted.
+   *
+   * @return the forks
+   */
+  public long getForks() {
+    return this.forks;
+  }
+
+  /**
+   * Gets the share of the minted blocks that are stale.
+   *
+   * @return the stale rate
+   */
+  public double getStaleRate() {
+    return this.mintedBlocks == 0 ? 0 : (double) this.staleBlocks / this.mintedBlocks;
+  }
+
+  /**
+   * Gets the metrics in the format:
+   *
+   * <p><em>minted blocks: n, stale blocks: n, stale rate: rate, forks: n, reorganizations: n,
+   * depths: {depth=n, ...}, time to resolution: sketch</em>
+   *
+   * <p>the sketch in the format of {@link LatencySketch#toString()}.
+   *
+   * @return the metrics
+   */
+  @Override
+  public String toString() {
+    StringBuilder depths = new StringBuilder("{");
+    for (int depth = 0; depth < this.depths.length; depth++) {
+      if (this.depths[depth] > 0) {
+        depths.append(depths.length() > 1 ? ", " : "").append(depth).append('=')
+            .append(this.depths[depth]);
+      }
+    }
+    depths.append('}');
+    return "minted blocks: " + this.mintedBlocks
+        + ", stale blocks: " + this.staleBlocks
+        + ", stale rate: " + this.getStaleRate()
+        + ", forks: " + this.forks
+        + ", reorganizations: " + this.reorganizations
+        + ", depths: " + depths
+        + ", time to resolution: " + this.resolutionTimes;
+  }
+}
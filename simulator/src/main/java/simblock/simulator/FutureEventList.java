@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.Serializable;
+
+/**
+ * The interface Future event list (FEL) stores the {@link ScheduledTask} instances handled by the
+ * {@link Timer}. Implementations are selected by
+ * {@link simblock.settings.SimulationConfiguration#FUTURE_EVENT_LIST} and must provide a public
+ * no-argument constructor.
+ */
+public interface FutureEventList extends Serializable {
+  /**
+   * Adds a scheduled task to the list.
+   *
+   * @param scheduledTask the scheduled task
+   */
+  void add(ScheduledTask scheduledTask);
+
+  /**
+   * Gets the scheduled task to be executed next without removing it.
+   *
+   * @return the earliest scheduled task or null if the list is empty
+   */
+  ScheduledTask peek();
+
+  /**
+   * Removes and returns the scheduled task to be executed next.
+   *
+   * @return the earliest scheduled task or null if the list is empty
+   */
+  ScheduledTask poll();
+
+  /**
+   * Removes all cancelled scheduled tasks from the list.
+   *
+   * @return the number of removed tasks
+   */
+  int removeCancelled();
+
+  /**
+   * Gets the number of scheduled tasks in the list, including cancelled ones.
+   *
+   * @return the size
+   */
+  int size();
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.settings.NetworkConfiguration.LATENCY;
+import static simblock.simulator.Network.getLatency;
+
+import java.util.Random;
+
+/**
+ * The type Future event list benchmark compares the {@link FutureEventList} implementations on
+ * the same event stream, in the hold model: the list is filled with a number of pending tasks,
+ * then every task polled schedules a new one, delayed by a message latency drawn as by the
+ * simulation between two random regions. The delays are drawn before the lists are timed, so
+ * every implementation is given the same stream, and the order of the polled tasks is checked to
+ * be the same.
+ *
+ * <p>The arguments are the number of tasks polled, 10,000,000 by default, the number of pending
+ * tasks, 100,000 by default, and the seed of the delays, 0 by default. Each implementation is run
+ * in several rounds, the first ones warming up the JVM, and its throughput is printed in the
+ * format:
+ *
+ * <p><em>round: implementation: events/sec: throughput, checksum: checksum</em>
+ */
+public class FutureEventListBenchmark {
+  /**
+   * The implementations compared.
+   */
+  private static final String[] IMPLEMENTATIONS = {
+      "simblock.simulator.HeapEventList", "simblock.simulator.CalendarEventList"};
+
+  /**
+   * The number of rounds each implementation is run.
+   */
+  private static final int ROUNDS = 5;
+
+  /**
+   * The entry point.
+   *
+   * @param args the number of polled tasks, the number of pending tasks and the seed
+   */
+  public static void main(String[] args) {
+    int events = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+    int pending = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 0L;
+
+    Random random = new Random(seed);
+    long[] delays = new long[pending + events];
+    for (int i = 0; i < delays.length; i++) {
+      delays[i] = getLatency(
+          random.nextInt(LATENCY.length), random.nextInt(LATENCY.length), random);
+    }
+
+    long expectedChecksum = 0;
+    for (int round = 1; round <= ROUNDS; round++) {
+      for (String implementation : IMPLEMENTATIONS) {
+        FutureEventList list = Timer.createFutureEventList(implementation);
+        long start = System.nanoTime();
+        long checksum = hold(list, delays, pending, events);
+        long elapsed = Math.max(System.nanoTime() - start, 1);
+        if (expectedChecksum == 0) {
+          expectedChecksum = checksum;
+        } else if (checksum != expectedChecksum) {
+          throw new IllegalStateException(implementation + " polls the tasks in another order");
+        }
+        System.out.println(round + ": " + implementation + ": events/sec: "
+            + events * 1_000_000_000L / elapsed + ", checksum: " + checksum);
+      }
+    }
+  }
+
+  /**
+   * Runs the hold model on a future event list.
+   *
+   * @param list    the future event list
+   * @param delays  the delays of the pending tasks then of the tasks scheduled
+   * @param pending the number of pending tasks
+   * @param events  the number of tasks polled
+   * @return a checksum of the order of the polled tasks
+   */
+  private static long hold(FutureEventList list, long[] delays, int pending, int events) {
+    long sequence = 0;
+    for (int i = 0; i < pending; i++) {
+      list.add(new ScheduledTask(null, delays[i], sequence++));
+    }
+    long checksum = 0;
+    for (int i = 0; i < events; i++) {
+      ScheduledTask scheduledTask = list.poll();
+      checksum = checksum * 31 + scheduledTask.getSequence();
+      list.add(new ScheduledTask(
+          null, scheduledTask.getScheduledTime() + delays[pending + i], sequence++));
+    }
+    return checksum;
+  }
+}
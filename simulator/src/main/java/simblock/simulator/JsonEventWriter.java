@@ -0,0 +1,181 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * The type Json event writer writes the events of a simulation to output.json, the JSON array
+ * read by the visualizer. Each event is an object with its kind and its content; the array is
+ * opened when the writer is created and closed by the simulation-end event.
+ *
+ * <p>Each event is formatted into a reused character buffer and written in one call, the numbers
+ * being converted to digits in place, so no string is created for an event.
+ */
+public class JsonEventWriter implements SimulationEventListener {
+  private final Writer writer;
+
+  /**
+   * The characters of the event being formatted.
+   */
+  private final char[] buffer = new char[256];
+
+  /**
+   * The number of characters of the event being formatted.
+   */
+  private int length = 0;
+
+  /**
+   * Instantiates a new Json event writer and starts the array.
+   *
+   * @param writer the writer of output.json
+   */
+  public JsonEventWriter(Writer writer) {
+    this.writer = writer;
+    //start json format
+    this.append("[");
+    this.write();
+  }
+
+  @Override
+  public void nodeAdded(long timestamp, int nodeId, int regionId) {
+    this.append("{\"kind\":\"add-node\",\"content\":{\"timestamp\":");
+    this.append(timestamp);
+    this.append(",\"node-id\":");
+    this.append(nodeId);
+    this.append(",\"region-id\":");
+    this.append(regionId);
+    this.append("}},");
+    this.write();
+  }
+
+  @Override
+  public void linkAdded(long timestamp, int beginNodeId, int endNodeId) {
+    this.writeLink("add-link", timestamp, beginNodeId, endNodeId);
+  }
+
+  @Override
+  public void linkRemoved(long timestamp, int beginNodeId, int endNodeId) {
+    this.writeLink("remove-link", timestamp, beginNodeId, endNodeId);
+  }
+
+  private void writeLink(String kind, long timestamp, int beginNodeId, int endNodeId) {
+    this.append("{\"kind\":\"");
+    this.append(kind);
+    this.append("\",\"content\":{\"timestamp\":");
+    this.append(timestamp);
+    this.append(",\"begin-node-id\":");
+    this.append(beginNodeId);
+    this.append(",\"end-node-id\":");
+    this.append(endNodeId);
+    this.append("}},");
+    this.write();
+  }
+
+  @Override
+  public void blockAdded(long timestamp, int nodeId, int blockId) {
+    this.append("{\"kind\":\"add-block\",\"content\":{\"timestamp\":");
+    this.append(timestamp);
+    this.append(",\"node-id\":");
+    this.append(nodeId);
+    this.append(",\"block-id\":");
+    this.append(blockId);
+    this.append("}},");
+    this.write();
+  }
+
+  @Override
+  public void blockFlow(long transmissionTimestamp, long receptionTimestamp, int beginNodeId,
+                        int endNodeId, int blockId) {
+    this.append("{\"kind\":\"flow-block\",\"content\":{\"transmission-timestamp\":");
+    this.append(transmissionTimestamp);
+    this.append(",\"reception-timestamp\":");
+    this.append(receptionTimestamp);
+    this.append(",\"begin-node-id\":");
+    this.append(beginNodeId);
+    this.append(",\"end-node-id\":");
+    this.append(endNodeId);
+    this.append(",\"block-id\":");
+    this.append(blockId);
+    this.append("}},");
+    this.write();
+  }
+
+  @Override
+  public void simulationEnd(long timestamp) {
+    this.append("{\"kind\":\"simulation-end\",\"content\":{\"timestamp\":");
+    this.append(timestamp);
+    this.append("}}");
+    //end json format
+    this.append("]");
+    this.write();
+  }
+
+  private void append(String str) {
+    str.getChars(0, str.length(), this.buffer, this.length);
+    this.length += str.length();
+  }
+
+  /**
+   * Appends the decimal digits of a number.
+   *
+   * @param value the number
+   */
+  private void append(long value) {
+    char[] buffer = this.buffer;
+    if (value < 0) {
+      buffer[this.length++] = '-';
+    } else {
+      // The digits are taken from the negative value, which also holds Long.MIN_VALUE
+      value = -value;
+    }
+    int start = this.length;
+    do {
+      buffer[this.length++] = (char) ('0' - value % 10);
+      value /= 10;
+    } while (value != 0);
+    for (int i = start, j = this.length - 1; i < j; i++, j--) {
+      char digit = buffer[i];
+      buffer[i] = buffer[j];
+      buffer[j] = digit;
+    }
+  }
+
+  /**
+   * Writes the formatted event.
+   */
+  private void write() {
+    try {
+      this.writer.write(this.buffer, 0, this.length);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.length = 0;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.writer.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.writer.close();
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.PrintWriter;
+import java.io.Serializable;
+
+/**
+ * The type Latency sketch estimates the quantiles of a stream of non-negative times in fixed
+ * memory, whatever the number of values. The values are counted in buckets of logarithmically
+ * growing width, so a quantile is estimated within a relative error of
+ * {@link #RELATIVE_ACCURACY} (C. Masson et al., "DDSketch: A fast and fully-mergeable quantile
+ * sketch with relative-error guarantees", 2019). The minimum and maximum are exact.
+ */
+public class LatencySketch implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The relative error of the estimated quantiles.
+   */
+  public static final double RELATIVE_ACCURACY = 0.01;
+
+  /**
+   * The ratio of the bounds of a bucket.
+   */
+  private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+
+  /**
+   * The number of buckets, bucket 0 holding the zeros and bucket i &gt; 0 the values in
+   * (GAMMA^(i-2), GAMMA^(i-1)]. The last bucket also holds the larger values, above 10^17.
+   */
+  private static final int NUM_OF_BUCKETS = 2048;
+
+  private final long[] counts = new long[NUM_OF_BUCKETS];
+
+  private long count = 0;
+
+  private long sum = 0;
+
+  private long min = Long.MAX_VALUE;
+
+  private long max = Long.MIN_VALUE;
+
+  /**
+   * Adds a value.
+   *
+   * @param value the value, non-negative
+   */
+  public void add(long value) {
+    int bucket = value == 0 ? 0 : 1 + (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+    this.counts[Math.min(bucket, NUM_OF_BUCKETS - 1)]++;
+    this.count++;
+    this.sum += value;
+    this.min = Math.min(this.min, value);
+    this.max = Math.max(this.max, value);
+  }
+
+  /**
+   * Gets the number of values.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Gets the mean of the values.
+   *
+   * @return the mean, NaN if there is no value
+   */
+  public double getMean() {
+    return (double) this.sum / this.count;
+  }
+
+  /**
+   * Gets the largest value.
+   *
+   * @return the max, Long.MIN_VALUE if there is no value
+   */
+  public long getMax() {
+    return this.max;
+  }
+
+  /**
+   * Estimates a quantile, the value of the given rank among the sorted values.
+   *
+   * @param quantile the quantile, between 0 and 1
+   * @return the estimated value, clamped to the exact minimum and maximum, or -1 if there is no
+   *     value
+   */
+  public long getQuantile(double quantile) {
+    if (this.count == 0) {
+      return -1;
+    }
+    long rank = (long) (quantile * (this.count - 1));
+    int bucket = 0;
+    for (long seen = this.counts[0]; seen <= rank; seen += this.counts[bucket]) {
+      bucket++;
+    }
+    // The value closest to the bounds of the bucket in relative terms
+    long value = bucket == 0 ? 0 : Math.round(2 * Math.pow(GAMMA, bucket - 1) / (GAMMA + 1));
+    return Math.max(this.min, Math.min(this.max, value));
+  }
+
+  /**
+   * Writes the histogram of the values as CSV, one line per non-empty bucket in the format:
+   *
+   * <p><em>prefix, from, to, count</em>
+   *
+   * <p>the bucket holding the values from <em>from</em> to <em>to</em> included, <em>to</em>
+   * empty for the last bucket.
+   *
+   * @param writer the writer
+   * @param prefix the first columns of the lines
+   */
+  public void writeHistogram(PrintWriter writer, String prefix) {
+    for (int bucket = 0; bucket < NUM_OF_BUCKETS; bucket++) {
+      if (this.counts[bucket] == 0) {
+        continue;
+      }
+      long from = bucket <= 1 ? bucket : (long) Math.pow(GAMMA, bucket - 2) + 1;
+      writer.println(prefix + "," + from + ","
+          + (bucket == NUM_OF_BUCKETS - 1 ? "" : getUpperBound(bucket)) + ","
+          + this.counts[bucket]);
+    }
+  }
+
+  /**
+   * Gets the largest value of a bucket.
+   */
+  private static long getUpperBound(int bucket) {
+    return bucket == 0 ? 0 : (long) Math.pow(GAMMA, bucket - 1);
+  }
+
+  /**
+   * Gets the summary of the values in the format:
+   *
+   * <p><em>count: count, p50: value, p90: value, p99: value, max: value</em>
+   *
+   * @return the summary
+   */
+  @Override
+  public String toString() {
+    return "count: " + this.count
+        + ", p50: " + this.getQuantile(0.5)
+        + ", p90: " + this.getQuantile(0.9)
+        + ", p99: " + this.getQuantile(0.99)
+        + ", max: " + (this.count == 0 ? -1 : this.max);
+  }
+}
@@ -19,58 +19,40 @@ package simblock.simulator;
 
 import static simblock.settings.SimulationConfiguration.ALGO;
 import static simblock.settings.SimulationConfiguration.AVERAGE_MINING_POWER;
+import static simblock.settings.SimulationConfiguration.CHECKPOINT_BLOCK_HEIGHT;
 import static simblock.settings.SimulationConfiguration.END_BLOCK_HEIGHT;
+import static simblock.settings.SimulationConfiguration.FORK_METRICS_INTERVAL;
 import static simblock.settings.SimulationConfiguration.INTERVAL;
 import static simblock.settings.ProposalConfiguration.NUM_OF_NODES;
+import static simblock.settings.SimulationConfiguration.ROUTING_TABLE_REPORT;
 import static simblock.settings.SimulationConfiguration.STDEV_OF_MINING_POWER;
 import static simblock.settings.SimulationConfiguration.TABLE;
 import static simblock.settings.SimulationConfiguration.CBR_USAGE_RATE;
 import static simblock.settings.SimulationConfiguration.CHURN_NODE_RATE;
+import static simblock.settings.SimulationConfiguration.SEED;
 import static simblock.simulator.Network.getDegreeDistribution;
 import static simblock.simulator.Network.getRegionDistribution;
 import static simblock.simulator.Network.printRegion;
-import static simblock.simulator.Simulator.addNode;
-import static simblock.simulator.Simulator.getSimulatedNodes;
-import static simblock.simulator.Simulator.printAllPropagation;
-import static simblock.simulator.Simulator.setTargetInterval;
-import static simblock.simulator.Timer.getCurrentTime;
-import static simblock.simulator.Timer.getTask;
-import static simblock.simulator.Timer.runTask;
-
-import java.io.BufferedWriter;
+
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
-import java.util.Set;
-import java.util.TreeSet;
 import simblock.block.Block;
 import simblock.node.Node;
-import simblock.node.routing.BitcoinCoreTable;
 import simblock.task.AbstractMintingTask;
+import simblock.task.Task;
 
 
 /**
  * The type Main represents the entry point.
  */
 public class Main {
-  /**
-   * The constant to be used as the simulation seed.
-   */
-  public static Random random = new Random(10);
-
-  /**
-   * The initial simulation time.
-   */
-  public static long simulationTime = 0;
   /**
    * Path to config file.
    */
@@ -90,158 +72,185 @@ public class Main {
   }
 
   /**
-   * The output writer.
-   */
-  //TODO use logger
-  public static PrintWriter OUT_JSON_FILE;
-
-  /**
-   * The constant STATIC_JSON_FILE.
+   * The entry point. The optional first argument overrides the output directory and the optional
+   * second argument the seed of the simulation. The optional third argument is a checkpoint file
+   * the simulation is resumed from instead of building a new network, the seed is then ignored.
+   *
+   * @param args the input arguments
    */
-  //TODO use logger
-  public static PrintWriter STATIC_JSON_FILE;
-
-  static {
+  public static void main(String[] args) {
+    URI outFileUri = OUT_FILE_URI;
+    if (args.length > 0) {
+      File outDir = new File(args[0]).getAbsoluteFile();
+      new File(outDir, "graph").mkdirs();
+      outFileUri = outDir.toURI();
+    }
+    long seed = args.length > 1 ? Long.parseLong(args[1]) : SEED;
     try {
-      OUT_JSON_FILE = new PrintWriter(
-          new BufferedWriter(new FileWriter(new File(OUT_FILE_URI.resolve("./output.json")))));
-      STATIC_JSON_FILE = new PrintWriter(
-          new BufferedWriter(new FileWriter(new File(OUT_FILE_URI.resolve("./static.json")))));
+      if (args.length > 2) {
+        Checkpoint checkpoint = Checkpoint.read(new File(args[2]), outFileUri);
+        run(checkpoint.getContext(), checkpoint.getBlockHeight());
+      } else {
+        run(new SimulationContext(seed, outFileUri));
+      }
     } catch (IOException e) {
       e.printStackTrace();
     }
   }
 
   /**
-   * The entry point.
+   * Runs a simulation in the provided context. Simulations with independent contexts can be run
+   * concurrently.
    *
-   * @param args the input arguments
+   * @param context the simulation context
    */
-  public static void main(String[] args) {
-    final long start = System.currentTimeMillis();
-    setTargetInterval(INTERVAL);
+  public static void run(SimulationContext context) {
+    run(context, 0);
+  }
 
-    //start json format
-    OUT_JSON_FILE.print("[");
-    OUT_JSON_FILE.flush();
+  /**
+   * Runs a simulation in the provided context from the provided block height. At block height 0
+   * a new network is constructed, otherwise the context has been read from a {@link Checkpoint}
+   * taken at that height. A checkpoint is written to the output directory once the block height
+   * reaches {@link simblock.settings.SimulationConfiguration#CHECKPOINT_BLOCK_HEIGHT}.
+   *
+   * @param context     the simulation context
+   * @param blockHeight the block height the simulation starts from
+   */
+  public static void run(SimulationContext context, int blockHeight) {
+    final long start = System.currentTimeMillis();
+    final Timer timer = context.getTimer();
+    final Simulator simulator = context.getSimulator();
+    final SimulationEventRegistry eventRegistry = context.getEventRegistry();
+    simulator.setTargetInterval(INTERVAL);
 
     // Log regions
-    printRegion();
-
-    // Setup network
-    constructNetworkWithAllNodes(NUM_OF_NODES);
+    printRegion(context.getStaticJsonFile());
 
     // Initial block height, we stop at END_BLOCK_HEIGHT
-    int currentBlockHeight = 1;
-
-    // Iterate over tasks and handle
-    while (getTask() != null) {
-      if (getTask() instanceof AbstractMintingTask) {
-        AbstractMintingTask task = (AbstractMintingTask) getTask();
-        if (task.getParent().getHeight() == currentBlockHeight) {
-          currentBlockHeight++;
-        }
-        if (currentBlockHeight > END_BLOCK_HEIGHT) {
-          break;
+    int currentBlockHeight = blockHeight;
+    if (currentBlockHeight == 0) {
+      // Setup network
+      constructNetworkWithAllNodes(context, NUM_OF_NODES);
+      currentBlockHeight = 1;
+    }
+    boolean checkpointPending =
+        CHECKPOINT_BLOCK_HEIGHT > currentBlockHeight && !(timer instanceof ParallelTimer);
+
+    // Iterate over the tasks scheduled for the same time and handle
+    simulation:
+    while (timer.nextBatch()) {
+      Task task;
+      while ((task = timer.getBatchTask()) != null) {
+        if (task instanceof AbstractMintingTask) {
+          AbstractMintingTask mintingTask = (AbstractMintingTask) task;
+          if (mintingTask.getParent().getHeight() == currentBlockHeight) {
+            currentBlockHeight++;
+            // Let the output be followed while the simulation runs
+            try {
+              eventRegistry.flush();
+            } catch (IOException e) {
+              e.printStackTrace();
+            }
+            if (FORK_METRICS_INTERVAL > 0 && currentBlockHeight % FORK_METRICS_INTERVAL == 0) {
+              System.out.println("fork metrics at height " + currentBlockHeight + ": "
+                  + context.getBlockRegistry().getForkMetrics());
+            }
+          }
+          if (currentBlockHeight > END_BLOCK_HEIGHT) {
+            break simulation;
+          }
+          // Log every 100 blocks and at the second block
+          // TODO use constants here
+          if (currentBlockHeight % 100 == 0 || currentBlockHeight == 2) {
+            writeGraph(context, currentBlockHeight);
+          }
         }
-        // Log every 100 blocks and at the second block
-        // TODO use constants here
-        if (currentBlockHeight % 100 == 0 || currentBlockHeight == 2) {
-          writeGraph(currentBlockHeight);
+        // Execute task
+        timer.runBatchTask();
+      }
+      // Checkpoints are taken between two batches
+      if (checkpointPending && currentBlockHeight >= CHECKPOINT_BLOCK_HEIGHT) {
+        checkpointPending = false;
+        try {
+          Checkpoint.write(context, currentBlockHeight,
+              new File(context.getOutFileUri().resolve("./checkpoint.bin")));
+        } catch (IOException e) {
+          e.printStackTrace();
         }
       }
-      // Execute task
-      runTask();
     }
+    timer.close();
 
     // Print propagation information about all blocks
-    printAllPropagation();
-
-    //TODO logger
-    System.out.println();
-
-    Set<Block> blocks = new HashSet<>();
-
-    // Get the latest block from the first simulated node
-    Block block = getSimulatedNodes().get(0).getBlock();
-
-    //Update the list of known blocks by adding the parents of the aforementioned block
-    while (block.getParent() != null) {
-      blocks.add(block);
-      block = block.getParent();
+    simulator.printAllPropagation();
+    if (simulator.getPropagationStatistics() != null) {
+      try {
+        simulator.getPropagationStatistics().write(
+            new PrintWriter(context.openOutputFile("./propagation.csv")));
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
     }
-
-    Set<Block> orphans = new HashSet<>();
-    int averageOrphansSize = 0;
-    // Gather all known orphans
-    for (Node node : getSimulatedNodes()) {
-      orphans.addAll(node.getOrphans());
-      averageOrphansSize += node.getOrphans().size();
+    if (simulator.getRegionLatencyHistograms() != null) {
+      try {
+        simulator.getRegionLatencyHistograms().writeSummary(
+            new PrintWriter(context.openOutputFile("./region-latency.csv")));
+        simulator.getRegionLatencyHistograms().writeHistograms(
+            new PrintWriter(context.openOutputFile("./region-histogram.csv")));
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
     }
-    averageOrphansSize = averageOrphansSize / getSimulatedNodes().size();
 
-    // Record orphans to the list of all known blocks
-    blocks.addAll(orphans);
+    //TODO logger
+    System.out.println();
 
-    ArrayList<Block> blockList = new ArrayList<>(blocks);
-
-    //Sort the blocks first by time, then by hash code
-    blockList.sort((a, b) -> {
-      int order = Long.signum(a.getTime() - b.getTime());
-      if (order != 0) {
-        return order;
-      }
-      order = System.identityHashCode(a) - System.identityHashCode(b);
-      return order;
-    });
+    BlockRegistry blockRegistry = context.getBlockRegistry();
 
     //Log all orphans
-    // TODO move to method and use logger
-    for (Block orphan : orphans) {
-      System.out.println(orphan + ":" + orphan.getHeight());
+    // TODO use logger
+    for (int id = 0; id < blockRegistry.size(); id++) {
+      Block orphan = blockRegistry.getBlock(id);
+      if (blockRegistry.isOrphan(orphan)) {
+        System.out.println(orphan + ":" + orphan.getHeight());
+      }
     }
-    System.out.println(averageOrphansSize);
-
-    /*
-    Log in format:
-     ＜fork_information, block height, block ID＞
-    fork_information: One of "OnChain" and "Orphan". "OnChain" denote block is on Main chain.
-    "Orphan" denote block is an orphan block.
-     */
-    // TODO move to method and use logger
+    System.out.println(blockRegistry.getOrphanCount() / simulator.getSimulatedNodes().size());
+    System.out.println("fork metrics: " + blockRegistry.getForkMetrics());
+
+    // Log the blocks of the chain of the first simulated node and the orphans
+    // TODO use logger
     try {
-      FileWriter fw = new FileWriter(new File(OUT_FILE_URI.resolve("./blockList.txt")), false);
-      PrintWriter pw = new PrintWriter(new BufferedWriter(fw));
-
-      for (Block b : blockList) {
-        if (!orphans.contains(b)) {
-          pw.println("OnChain : " + b.getHeight() + " : " + b);
-        } else {
-          pw.println("Orphan : " + b.getHeight() + " : " + b);
-        }
-      }
+      PrintWriter pw = new PrintWriter(context.openOutputFile("./blockList.txt"));
+      blockRegistry.writeBlockList(pw, simulator.getSimulatedNodes().get(0).getBlock());
       pw.close();
 
     } catch (IOException ex) {
       ex.printStackTrace();
     }
 
-    OUT_JSON_FILE.print("{");
-    OUT_JSON_FILE.print("\"kind\":\"simulation-end\",");
-    OUT_JSON_FILE.print("\"content\":{");
-    OUT_JSON_FILE.print("\"timestamp\":" + getCurrentTime());
-    OUT_JSON_FILE.print("}");
-    OUT_JSON_FILE.print("}");
-    //end json format
-    OUT_JSON_FILE.print("]");
-    OUT_JSON_FILE.close();
+    eventRegistry.simulationEnd(timer.getCurrentTime());
+    try {
+      eventRegistry.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
 
 
     long end = System.currentTimeMillis();
-    simulationTime += end - start;
+    long simulationTime = end - start;
     // Log simulation time in milliseconds
     System.out.println("actual simulation time: "+simulationTime+" ms, start:"+start+" ms, end:"+end+" ms");
-    System.out.println("end of time to spread block: "+getCurrentTime());
+    System.out.println("end of time to spread block: "+timer.getCurrentTime());
+    // Log the throughput of the future event list
+    System.out.println("processed events: " + timer.getProcessedTaskCount() + ", events/sec: "
+        + timer.getProcessedTaskCount() * 1000 / Math.max(simulationTime, 1));
+    // Log the share of the task runs undone by the optimistic parallel timer
+    long rolledBackTaskCount = timer.getRolledBackTaskCount();
+    System.out.println("rolled back events: " + rolledBackTaskCount + ", rollback rate: "
+        + (double) rolledBackTaskCount
+        / Math.max(timer.getProcessedTaskCount() + rolledBackTaskCount, 1));
 
   }
 
@@ -261,10 +270,12 @@ public class Main {
    *
    * @param distribution the distribution
    * @param facum        whether the distribution is cumulative distribution
+   * @param random       the random number generator of the simulation
    * @return array list
    */
   //TODO explanation on facum etc.
-  public static ArrayList<Integer> makeRandomListFollowDistribution(double[] distribution, boolean facum) {
+  public static ArrayList<Integer> makeRandomListFollowDistribution(
+      double[] distribution, boolean facum, Random random) {
     ArrayList<Integer> list = new ArrayList<>();
     int index = 0;
 
@@ -297,10 +308,11 @@ public class Main {
   /**
    * Populate the list using the rate.
    *
-   * @param rate the rate of true
+   * @param rate   the rate of true
+   * @param random the random number generator of the simulation
    * @return array list
    */
-  public static ArrayList<Boolean> makeRandomList(float rate){
+  public static ArrayList<Boolean> makeRandomList(float rate, Random random){
 		ArrayList<Boolean> list = new ArrayList<Boolean>();
 		for(int i=0; i < NUM_OF_NODES; i++){
 			list.add(i < NUM_OF_NODES*rate);
@@ -313,9 +325,10 @@ public class Main {
    * Generates a random mining power expressed as Hash Rate, and is the number of mining (hash
    * calculation) executed per millisecond.
    *
+   * @param random the random number generator of the simulation
    * @return the number of hash  calculations executed per millisecond.
    */
-  public static int genMiningPower() {
+  public static int genMiningPower(Random random) {
     double r = random.nextGaussian();
 
     return Math.max((int) (r * STDEV_OF_MINING_POWER + AVERAGE_MINING_POWER), 1);
@@ -324,116 +337,69 @@ public class Main {
   /**
    * Construct network with the provided number of nodes.
    *
+   * @param context  the simulation context
    * @param numNodes the num nodes
    */
-  public static void constructNetworkWithAllNodes(int numNodes) {
+  public static void constructNetworkWithAllNodes(SimulationContext context, int numNodes) {
+    final Random random = context.getRandom();
+    final Simulator simulator = context.getSimulator();
+    final SimulationEventRegistry eventRegistry = context.getEventRegistry();
 
     // Random distribution of nodes per region
     double[] regionDistribution = getRegionDistribution();
-    List<Integer> regionList = makeRandomListFollowDistribution(regionDistribution, false);
+    List<Integer> regionList = makeRandomListFollowDistribution(
+        regionDistribution, false, random);
 
     // Random distribution of node degrees
     double[] degreeDistribution = getDegreeDistribution();
-    List<Integer> degreeList = makeRandomListFollowDistribution(degreeDistribution, true);
+    List<Integer> degreeList = makeRandomListFollowDistribution(
+        degreeDistribution, true, random);
 
     // List of nodes using compact block relay.
-    List<Boolean> useCBRNodes = makeRandomList(CBR_USAGE_RATE);
+    List<Boolean> useCBRNodes = makeRandomList(CBR_USAGE_RATE, random);
 
     // List of churn nodes.
-		List<Boolean> churnNodes = makeRandomList(CHURN_NODE_RATE);
+		List<Boolean> churnNodes = makeRandomList(CHURN_NODE_RATE, random);
 
     for (int id = 1; id <= numNodes; id++) {
       // Each node gets assigned a region, its degree, mining power, routing table and
       // consensus algorithm
       // Node node = new Node(
-      //     id, degreeList.get(id - 1) + 1, regionList.get(id - 1), genMiningPower(), TABLE,
-      //     ALGO, useCBRNodes.get(id - 1), churnNodes.get(id - 1)
+      //     context, id, degreeList.get(id - 1) + 1, regionList.get(id - 1),
+      //     genMiningPower(random), TABLE, ALGO, useCBRNodes.get(id - 1), churnNodes.get(id - 1)
       // );
       Node node = new Node(
-          id, 8, regionList.get(id - 1), genMiningPower(), TABLE,
+          context, id, 8, regionList.get(id - 1), genMiningPower(random), TABLE,
           ALGO, useCBRNodes.get(id - 1), churnNodes.get(id - 1)
       );
       // Add the node to the list of simulated nodes
-      addNode(node);
-
-      OUT_JSON_FILE.print("{");
-      OUT_JSON_FILE.print("\"kind\":\"add-node\",");
-      OUT_JSON_FILE.print("\"content\":{");
-      OUT_JSON_FILE.print("\"timestamp\":0,");
-      OUT_JSON_FILE.print("\"node-id\":" + id + ",");
-      OUT_JSON_FILE.print("\"region-id\":" + regionList.get(id - 1));
-      OUT_JSON_FILE.print("}");
-      OUT_JSON_FILE.print("},");
-      OUT_JSON_FILE.flush();
+      simulator.addNode(node);
+
+      eventRegistry.nodeAdded(0, id, regionList.get(id - 1));
 
     }
 
     // Link newly generated nodes
-    ArrayList<Node> nodes = getSimulatedNodes();
-    Collections.shuffle(nodes);
+    ArrayList<Node> nodes = simulator.getSimulatedNodes();
+    Collections.shuffle(nodes, random);
     for (Node node : nodes) {
       node.joinNetwork();
     }
-    for (Node node : getSimulatedNodes()) {
-      BitcoinCoreTable selfRoutingTable = (BitcoinCoreTable) node.getRoutingTable();
-
-      Set<Integer> outboundRegions = new TreeSet<>();
-      String outbound_table = "";
-      String outbound_all_regions = "";
-      Iterator<Node> outbount_iterator = selfRoutingTable.getOutbound().iterator();
-      while (outbount_iterator.hasNext()){
-        Node n = outbount_iterator.next();
-        outboundRegions.add(n.getRegion());
-        
-        if (!outbount_iterator.hasNext()){
-          // 最後の要素
-          outbound_table += n.getNodeID();
-          outbound_all_regions += n.getRegion();
-        }
-        else{
-          // それ以外
-          outbound_table += n.getNodeID() + ",";
-          outbound_all_regions += n.getRegion() + ",";
+    if (ROUTING_TABLE_REPORT) {
+      try {
+        RoutingTableReport report =
+            new RoutingTableReport(context.openOutputFile("./routing.jsonl"));
+        for (Node node : simulator.getSimulatedNodes()) {
+          report.write(node);
         }
+        report.close();
+      } catch (IOException ex) {
+        ex.printStackTrace();
       }
-
-      Set<Integer> inboundRegions = new TreeSet<>();
-      String inbound_table = "";
-      String inbound_all_regions = "";
-      Iterator<Node> inbound_iterator = selfRoutingTable.getInbound().iterator();
-      while (inbound_iterator.hasNext()){
-        Node n = inbound_iterator.next();
-        inboundRegions.add(n.getRegion());
-        
-        if (!inbound_iterator.hasNext()){
-          // 最後の要素
-          inbound_table += n.getNodeID();
-          inbound_all_regions += n.getRegion();
-        }
-        else{
-          // それ以外
-          inbound_table += n.getNodeID() + ",";
-          inbound_all_regions += n.getRegion() + ",";
-        }
-      }
-
-      System.out.println(
-      "; {\"node_id\": "+node.getNodeID()
-      + ",\"region\": "+node.getRegion()
-      + ",\"neighbors_num\": "+node.getNeighbors().size()
-      + ",\"outbound_table_num\": "+selfRoutingTable.getOutbound().size()
-      + ",\"outbound_table\": ["+ outbound_table+"]"
-      + ",\"outbound_all_regions\": ["+ outbound_all_regions+"]"
-      + ",\"outbound_regions\": "+ outboundRegions
-      + ",\"inbound_table_num\": "+selfRoutingTable.getInbound().size()
-      + ",\"inbound_table\": ["+ inbound_table+"]"
-      + ",\"inbound_all_regions\": ["+ inbound_all_regions+"]"
-      + ",\"inbound_regions\": " + inboundRegions +"}"
-    );
     }
 
     // Designates a random node (nodes in list are randomized) to mint the genesis block
-    getSimulatedNodes().get(0).genesisBlock();
+    simulator.getSimulatedNodes().get(0).genesisBlock();
   }
 
   /**
@@ -441,19 +407,26 @@ public class Main {
    *
    * <p><em>nodeID_1</em>, <em>nodeID_2</em>
    *
-   * <p>meaning there is a connection from nodeID_1 to right nodeID_1.
+   * <p>meaning there is a connection from nodeID_1 to right nodeID_1. With
+   * {@link simblock.settings.SimulationConfiguration#DELTA_GRAPH} the snapshot is appended to the
+   * {@link TopologyLog} instead.
    *
+   * @param context     the simulation context
    * @param blockHeight the index of the graph and the current block height
    */
   //TODO use logger
-  public static void writeGraph(int blockHeight) {
+  public static void writeGraph(SimulationContext context, int blockHeight) {
+    final Simulator simulator = context.getSimulator();
+    if (context.getTopologyLog() != null) {
+      context.getTopologyLog().snapshot(blockHeight, simulator);
+      return;
+    }
     try {
-      FileWriter fw = new FileWriter(
-          new File(OUT_FILE_URI.resolve("./graph/" + blockHeight + ".txt")), false);
-      PrintWriter pw = new PrintWriter(new BufferedWriter(fw));
+      PrintWriter pw = new PrintWriter(
+          context.openOutputFile("./graph/" + blockHeight + ".txt"));
 
-      for (int index = 1; index <= getSimulatedNodes().size(); index++) {
-        Node node = getSimulatedNodes().get(index - 1);
+      for (int index = 1; index <= simulator.getSimulatedNodes().size(); index++) {
+        Node node = simulator.getSimulatedNodes().get(index - 1);
         for (int i = 0; i < node.getNeighbors().size(); i++) {
           Node neighbor = node.getNeighbors().get(i);
           pw.println(node.getNodeID() + " " + neighbor.getNodeID());
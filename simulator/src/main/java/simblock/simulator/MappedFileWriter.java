@@ -0,0 +1,244 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The type Mapped file writer writes text to a file through a memory mapped region of the file
+ * instead of write calls. The characters are encoded to UTF-8 directly into the mapped bytes,
+ * ASCII characters being stored as is. When the region is full the next region of the file is
+ * mapped, so the file grows by large chunks.
+ *
+ * <p>The written text is visible to other processes reading the file while it is written, but
+ * mapping a region extends the file with zero bytes up to the end of the region, up to 32 MB.
+ * {@link #flush()} and {@link #close()} release the region and truncate the file to the written
+ * length, the next write mapping a new region, so the file has no trailing zero bytes after a
+ * flush. A file left by a process that ended without flushing keeps them. The regions are
+ * released through sun.misc.Unsafe when it is available, as a mapped file cannot be truncated on
+ * some platforms, Windows among them; elsewhere they are left to the garbage collector.
+ */
+public class MappedFileWriter extends Writer {
+  /**
+   * The number of bytes mapped at once.
+   */
+  private static final int CHUNK_SIZE = 1 << 25;
+
+  /**
+   * The longest UTF-8 encoding of a character, a surrogate pair.
+   */
+  private static final int MAX_CHAR_BYTES = 4;
+
+  /**
+   * The instance of sun.misc.Unsafe releasing the mapped regions, null if not available.
+   */
+  private static final Object UNSAFE;
+
+  private static final Method INVOKE_CLEANER;
+
+  static {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      unsafe = field.get(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // The regions are released by the garbage collector
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  private final FileChannel channel;
+
+  /**
+   * The position in the file of the mapped region.
+   */
+  private long regionStart = 0;
+
+  /**
+   * The mapped region, null after a flush until the next write.
+   */
+  private MappedByteBuffer region;
+
+  /**
+   * The high surrogate of a pair split between two writes, 0 if none.
+   */
+  private char highSurrogate = 0;
+
+  /**
+   * Instantiates a new Mapped file writer, replacing the content of the file.
+   *
+   * @param file the file
+   * @throws IOException if the file cannot be opened
+   */
+  public MappedFileWriter(File file) throws IOException {
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    int end = off + len;
+    while (off < end) {
+      int limit = this.reserve(off, end);
+      for (; off < limit; off++) {
+        this.put(cbuf[off]);
+      }
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    int end = off + len;
+    while (off < end) {
+      int limit = this.reserve(off, end);
+      for (; off < limit; off++) {
+        this.put(str.charAt(off));
+      }
+    }
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    this.reserve(0, 1);
+    this.put((char) c);
+  }
+
+  /**
+   * Maps the next region if the current one cannot hold another character and gets how many of
+   * the characters to be written are sure to fit in the region.
+   *
+   * @param off the index of the first character to be written
+   * @param end the index after the last character to be written
+   * @return the index after the last character that fits
+   * @throws IOException if the file cannot be mapped
+   */
+  private int reserve(int off, int end) throws IOException {
+    if (this.region == null || this.region.remaining() < MAX_CHAR_BYTES) {
+      this.remap();
+    }
+    return (int) Math.min(end, (long) off + this.region.remaining() / MAX_CHAR_BYTES);
+  }
+
+  private void put(char c) {
+    MappedByteBuffer bytes = this.region;
+    if (c < 0x80) {
+      bytes.put((byte) c);
+    } else if (c < 0x800) {
+      bytes.put((byte) (0xC0 | c >> 6));
+      bytes.put((byte) (0x80 | c & 0x3F));
+    } else if (Character.isHighSurrogate(c)) {
+      this.highSurrogate = c;
+    } else if (Character.isLowSurrogate(c) && this.highSurrogate != 0) {
+      int codePoint = Character.toCodePoint(this.highSurrogate, c);
+      this.highSurrogate = 0;
+      bytes.put((byte) (0xF0 | codePoint >> 18));
+      bytes.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+      bytes.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+      bytes.put((byte) (0x80 | codePoint & 0x3F));
+    } else {
+      bytes.put((byte) (0xE0 | c >> 12));
+      bytes.put((byte) (0x80 | c >> 6 & 0x3F));
+      bytes.put((byte) (0x80 | c & 0x3F));
+    }
+  }
+
+  /**
+   * Maps the region of the file following the written bytes.
+   *
+   * @throws IOException if the file cannot be mapped
+   */
+  private void remap() throws IOException {
+    this.release();
+    this.region = this.channel.map(FileChannel.MapMode.READ_WRITE, this.regionStart, CHUNK_SIZE);
+  }
+
+  /**
+   * Releases the mapped region, if any, and moves the start of the next region to the end of the
+   * written bytes.
+   */
+  private void release() {
+    if (this.region != null) {
+      this.regionStart += this.region.position();
+      unmap(this.region);
+      this.region = null;
+    }
+  }
+
+  /**
+   * Releases the mapped region and truncates the file to the written length, removing the zero
+   * bytes following the text. The next write maps a new region, so the writer is meant to be
+   * flushed from time to time rather than after every write.
+   *
+   * @throws IOException if the file cannot be truncated
+   */
+  @Override
+  public void flush() throws IOException {
+    if (this.region != null) {
+      this.release();
+      this.channel.truncate(this.regionStart);
+    }
+  }
+
+  /**
+   * Truncates the file to the written length and closes it.
+   *
+   * @throws IOException if the file cannot be truncated
+   */
+  @Override
+  public void close() throws IOException {
+    if (!this.channel.isOpen()) {
+      return;
+    }
+    try {
+      this.flush();
+    } finally {
+      this.channel.close();
+    }
+  }
+
+  /**
+   * Releases a mapped region without waiting for the garbage collector, as a mapped file cannot
+   * be truncated on some platforms. The region is left to the garbage collector if it cannot be
+   * released.
+   *
+   * @param buffer the mapped region, not to be used anymore
+   */
+  private static void unmap(ByteBuffer buffer) {
+    if (UNSAFE == null) {
+      return;
+    }
+    try {
+      INVOKE_CLEANER.invoke(UNSAFE, buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // Released once unreachable
+    }
+  }
+}
@@ -0,0 +1,876 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.settings.SimulationConfiguration.FUTURE_EVENT_LIST;
+import static simblock.simulator.Network.getRegionList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import simblock.node.Node;
+import simblock.task.Task;
+
+/**
+ * The type Parallel timer is a conservative parallel implementation of the {@link Timer}. The
+ * nodes are partitioned by region, each partition holding the tasks of its nodes in its own
+ * future event list, and the partitions are run by a pool of threads in time windows.
+ *
+ * <p>A message cannot reach another node earlier than the minimum network latency, the
+ * lookahead. The tasks with a node (see {@link Task#getNode()}) scheduled before the end of the
+ * window starting at the earliest pending task and lasting the lookahead are thus independent of
+ * each other, except for the tasks of the same node which are run in order by the same thread.
+ * Tasks without a node, such as minting tasks, end the window and are run alone by the caller of
+ * {@link #nextBatch()}.
+ *
+ * <p>While run in a window, a task does not change the state shared by the simulation: the
+ * tasks it schedules and cancels and its {@link #runOrdered(Runnable)} actions, such as its
+ * output events, are logged and committed after the window in the order of the tasks, so the
+ * sequence numbers, the output and the propagation records are the same as with the sequential
+ * timer. A node scheduling a task without a node within the window, that is starting to mint a
+ * block that is found before the end of the window, stops there and its remaining tasks,
+ * including the tasks scheduled for the same time after that task, are run by the next windows.
+ * The logs of the tasks run past that point are only committed once every earlier task has been
+ * run.
+ *
+ * <p>With a window longer than the lookahead the partitions run optimistically (Time Warp, D.
+ * Jefferson, "Virtual time", 1985). A task scheduled on a node within the window is delivered at
+ * once, and a node that has already run a later task is rolled back: its state is restored from
+ * the snapshot taken before that task, the tasks it has run since are queued again and the tasks
+ * they have scheduled within the window are cancelled by anti-messages, which may roll back
+ * other nodes in turn. The partitions exchange the messages between other partitions in rounds
+ * until there is none left, which ends as every round settles the tasks of one more lookahead. A
+ * block minted within the window may reach any node a lookahead later, so the task scheduling
+ * the minting task shortens the window to that time. The tasks scheduled within the window are
+ * ordered by the tasks scheduling them until they are given their sequence numbers on commit, so
+ * the results are still the same as with the sequential timer.
+ */
+public class ParallelTimer extends Timer {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The lookahead in milliseconds.
+   */
+  private final long lookahead;
+
+  /**
+   * The length of the windows in milliseconds.
+   */
+  private final long window;
+
+  /**
+   * Whether the windows are longer than the lookahead and run optimistically.
+   */
+  private final boolean optimistic;
+
+  /**
+   * The thread pool running the partitions.
+   */
+  private final ExecutorService executor;
+
+  /**
+   * The partitions, one per region.
+   */
+  private final Partition[] partitions;
+
+  /**
+   * The partition run by the current thread, null outside of a window.
+   */
+  private final ThreadLocal<Partition> currentPartition = new ThreadLocal<>();
+
+  /**
+   * The logs of the tasks that have been run but not committed yet, in the order of the tasks.
+   */
+  private final ArrayList<TaskLog> pendingLogs = new ArrayList<>();
+
+  /**
+   * The number of committed tasks run in windows.
+   */
+  private long committedTaskCount = 0L;
+
+  /**
+   * The number of task runs undone by rollbacks.
+   */
+  private long rolledBackTaskCount = 0L;
+
+  /**
+   * Instantiates a new Parallel timer.
+   *
+   * @param numThreads the number of threads
+   * @param lookahead  the minimum delay of a task scheduled on another node in milliseconds
+   * @param window     the length of the windows in milliseconds, the windows are run
+   *                   optimistically if longer than the lookahead
+   */
+  public ParallelTimer(int numThreads, long lookahead, long window) {
+    if (lookahead < 1) {
+      throw new IllegalArgumentException("The lookahead must be positive: " + lookahead);
+    }
+    this.lookahead = lookahead;
+    this.window = Math.max(window, lookahead);
+    this.optimistic = this.window > lookahead;
+    this.executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+      Thread thread = new Thread(runnable, "simblock-timer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.partitions = new Partition[getRegionList().size()];
+    for (int i = 0; i < this.partitions.length; i++) {
+      this.partitions[i] = new Partition();
+    }
+  }
+
+  /**
+   * Gets the partition holding the tasks of the provided node.
+   *
+   * @param node the node
+   * @return the partition
+   */
+  private Partition getPartition(Node node) {
+    return this.partitions[node.getRegion() % this.partitions.length];
+  }
+
+  /**
+   * Gets the earliest pending task with a node.
+   *
+   * @return the scheduled task or null if there is none
+   */
+  private ScheduledTask peekPartitions() {
+    ScheduledTask earliest = null;
+    for (Partition partition : this.partitions) {
+      ScheduledTask first = partition.peek();
+      if (first != null && (earliest == null || first.compareTo(earliest) < 0)) {
+        earliest = first;
+      }
+    }
+    return earliest;
+  }
+
+  /**
+   * Runs the windows of tasks with a node until the next pending task is a task without a node,
+   * which is then pulled alone for the caller to inspect and run.
+   *
+   * @return false if task queue is empty
+   */
+  @Override
+  public boolean nextBatch() {
+    while (true) {
+      this.commitLogs();
+      ScheduledTask barrierTask = this.peekScheduledTask();
+      ScheduledTask next = this.peekPartitions();
+      if (next == null || barrierTask != null && barrierTask.compareTo(next) < 0) {
+        return this.pullBatch(1);
+      }
+      this.runWindow(next.getScheduledTime(), barrierTask);
+    }
+  }
+
+  /**
+   * Runs the tasks with a node scheduled before the end of the window starting at the provided
+   * time and before the next task without a node.
+   *
+   * @param windowStart the window start time
+   * @param barrierTask the next task without a node, null if there is none
+   */
+  private void runWindow(long windowStart, ScheduledTask barrierTask) {
+    long windowEnd = windowStart + this.window;
+    if (!this.pendingLogs.isEmpty()) {
+      // The tasks scheduled by pending logs are not queued yet
+      windowEnd = Math.min(windowEnd,
+          this.pendingLogs.get(0).scheduledTask.getScheduledTime() + this.lookahead);
+      for (TaskLog log : this.pendingLogs) {
+        if (log.barrierTime != Long.MAX_VALUE) {
+          windowEnd = Math.min(windowEnd, log.barrierTime + 1);
+        }
+      }
+    }
+
+    List<Partition> active = new ArrayList<>();
+    for (Partition partition : this.partitions) {
+      partition.windowEnd = windowEnd;
+      partition.barrierTask = barrierTask;
+      ScheduledTask first = partition.peek();
+      if (first != null && first.getScheduledTime() < windowEnd
+          && (barrierTask == null || first.compareTo(barrierTask) < 0)) {
+        active.add(partition);
+      }
+    }
+    while (!active.isEmpty()) {
+      this.runPartitions(active);
+      // Exchange the messages between partitions, running their receivers in the next round
+      active.clear();
+      for (Partition partition : this.partitions) {
+        windowEnd = Math.min(windowEnd, partition.windowEnd);
+      }
+      for (Partition partition : this.partitions) {
+        for (ScheduledTask antiMessage : partition.antiMessages) {
+          this.getPartition(antiMessage.getTask().getNode()).incomingAntiMessages.add(antiMessage);
+        }
+        for (ScheduledTask message : partition.outgoing) {
+          this.getPartition(message.getTask().getNode()).incoming.add(message);
+        }
+        partition.antiMessages.clear();
+        partition.outgoing.clear();
+      }
+      for (Partition partition : this.partitions) {
+        // The partitions that have run past the end of a shortened window are rolled back
+        if (partition.windowEnd > windowEnd || !partition.incoming.isEmpty()
+            || !partition.incomingAntiMessages.isEmpty()) {
+          partition.windowEnd = windowEnd;
+          active.add(partition);
+        }
+      }
+    }
+
+    for (Partition partition : this.partitions) {
+      partition.endWindow(this.pendingLogs);
+      this.rolledBackTaskCount += partition.rolledBackTaskCount;
+      partition.rolledBackTaskCount = 0L;
+    }
+    Collections.sort(this.pendingLogs);
+  }
+
+  /**
+   * Runs the provided partitions, in parallel if there is more than one.
+   *
+   * @param active the partitions
+   */
+  private void runPartitions(List<Partition> active) {
+    if (active.size() == 1) {
+      active.get(0).call();
+    } else {
+      try {
+        for (Future<Void> future : this.executor.invokeAll(active)) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while running a window", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Failed to run a window", e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Commits the logs of the tasks that precede every task still to be run, in the order of the
+   * tasks.
+   */
+  private void commitLogs() {
+    if (this.pendingLogs.isEmpty()) {
+      return;
+    }
+    // The tasks with a node scheduled while committing follow every pending log
+    ScheduledTask next = this.peekPartitions();
+    int numCommitted = 0;
+    for (TaskLog log : this.pendingLogs) {
+      ScheduledTask barrierTask = this.peekScheduledTask();
+      if (next != null && log.scheduledTask.compareTo(next) > 0
+          || barrierTask != null && log.scheduledTask.compareTo(barrierTask) > 0) {
+        break;
+      }
+      this.setCurrentTime(log.scheduledTask.getScheduledTime());
+      for (Runnable action : log.actions) {
+        action.run();
+      }
+      numCommitted++;
+    }
+    this.pendingLogs.subList(0, numCommitted).clear();
+    this.committedTaskCount += numCommitted;
+  }
+
+
+  /**
+   * Gives a task scheduled within an optimistic window its sequence number, moving it to the
+   * future event list if it has not been run.
+   *
+   * @param scheduledTask the scheduled task
+   */
+  private void commitScheduledTask(ScheduledTask scheduledTask) {
+    Partition partition = this.getPartition(scheduledTask.getTask().getNode());
+    boolean queued = partition.speculative.remove(scheduledTask);
+    scheduledTask.setSequence(this.nextSequence());
+    if (queued) {
+      partition.taskQueue.add(scheduledTask);
+    }
+  }
+
+  @Override
+  void schedule(Task task, long time) {
+    Partition partition = this.currentPartition.get();
+    if (partition != null) {
+      partition.schedule(task, time);
+    } else if (task.getNode() == null) {
+      super.schedule(task, time);
+    } else {
+      this.getPartition(task.getNode()).add(this.newScheduledTask(task, time));
+    }
+  }
+
+  @Override
+  public void removeTask(Task task) {
+    Partition partition = this.currentPartition.get();
+    if (partition != null) {
+      partition.log(() -> this.removeTask(task));
+    } else if (task.getNode() == null) {
+      super.removeTask(task);
+    } else {
+      this.getPartition(task.getNode()).remove(task);
+    }
+  }
+
+  /**
+   * Runs the tasks up to the next task without a node, and that task.
+   */
+  @Override
+  public void runTask() {
+    if (this.nextBatch()) {
+      this.runBatchTask();
+    }
+  }
+
+  @Override
+  public Task getTask() {
+    this.commitLogs();
+    ScheduledTask barrierTask = this.peekScheduledTask();
+    ScheduledTask next = this.peekPartitions();
+    if (next == null || barrierTask != null && barrierTask.compareTo(next) < 0) {
+      next = barrierTask;
+    }
+    return next == null ? null : next.getTask();
+  }
+
+  @Override
+  public long getCurrentTime() {
+    Partition partition = this.currentPartition.get();
+    if (partition != null) {
+      return partition.current.scheduledTask.getScheduledTime();
+    }
+    return super.getCurrentTime();
+  }
+
+  /**
+   * Runs an action changing the state shared by all nodes in the order of the tasks. Within a
+   * window the action is run when the task is committed.
+   *
+   * @param action the action
+   */
+  @Override
+  public void runOrdered(Runnable action) {
+    Partition partition = this.currentPartition.get();
+    if (partition != null) {
+      partition.log(action);
+    } else {
+      action.run();
+    }
+  }
+
+  /**
+   * Whether the actions passed to {@link #runOrdered(Runnable)} may be deferred.
+   *
+   * @return true, the actions run within a window are deferred to the commit of the task
+   */
+  @Override
+  public boolean isOrdered() {
+    return true;
+  }
+
+  /**
+   * The scheduled tasks are not reused, as they are referenced by the logs.
+   *
+   * @param scheduledTask the scheduled task
+   */
+  @Override
+  void recycle(ScheduledTask scheduledTask) {
+  }
+
+  @Override
+  public long getProcessedTaskCount() {
+    return super.getProcessedTaskCount() + this.committedTaskCount;
+  }
+
+  @Override
+  public long getRolledBackTaskCount() {
+    return this.rolledBackTaskCount;
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * The log of a task run in a window.
+   */
+  private static final class TaskLog implements Comparable<TaskLog> {
+    /**
+     * The scheduled task that has been run.
+     */
+    private final ScheduledTask scheduledTask;
+
+    /**
+     * The changes to the state shared by the simulation, in the order they have been made.
+     */
+    private final ArrayList<Runnable> actions = new ArrayList<>();
+
+    /**
+     * The earliest time of the tasks without a node scheduled by the task.
+     */
+    private long barrierTime = Long.MAX_VALUE;
+
+    /**
+     * The earliest task without a node scheduled by the task, ordered among the tasks of the
+     * window as it is once given its sequence number, null if there is none.
+     */
+    private ScheduledTask barrierTask;
+
+    /**
+     * The task the node stopped at before the task, restored if the task is rolled back.
+     */
+    private final ScheduledTask stopTask;
+
+    /**
+     * The state of the node before the task in an optimistic window, null otherwise.
+     */
+    private Node.Snapshot snapshot;
+
+    /**
+     * The tasks scheduled by the task within the optimistic window.
+     */
+    private ArrayList<ScheduledTask> children;
+
+    private TaskLog(ScheduledTask scheduledTask, ScheduledTask stopTask, Node.Snapshot snapshot) {
+      this.scheduledTask = scheduledTask;
+      this.stopTask = stopTask;
+      this.snapshot = snapshot;
+      this.children = snapshot == null ? null : new ArrayList<>();
+    }
+
+    @Override
+    public int compareTo(TaskLog o) {
+      return this.scheduledTask.compareTo(o.scheduledTask);
+    }
+  }
+
+  /**
+   * The tasks a node has run and deferred in the window.
+   */
+  private static final class NodeHistory {
+    /**
+     * The logs of the tasks run, in the order of the tasks.
+     */
+    private final ArrayList<TaskLog> logs = new ArrayList<>();
+
+    /**
+     * The tasks after the task the node stops at, to be run by a later window.
+     */
+    private final ArrayList<ScheduledTask> deferred = new ArrayList<>();
+
+    /**
+     * The task without a node scheduled within the window the node stops at, null if there is
+     * none.
+     */
+    private ScheduledTask stopTask = null;
+
+    /**
+     * Whether a task of the node follows the task the node stops at, including the tasks scheduled
+     * for the same time after it.
+     *
+     * @param scheduledTask the scheduled task
+     * @return true if the task is to be run by a later window
+     */
+    private boolean isStopped(ScheduledTask scheduledTask) {
+      return this.stopTask != null && scheduledTask.compareTo(this.stopTask) >= 0;
+    }
+  }
+
+  /**
+   * The tasks of the nodes of a region.
+   */
+  private final class Partition implements Callable<Void> {
+    /**
+     * The future event list of the partition.
+     */
+    private final FutureEventList taskQueue = createFutureEventList(FUTURE_EVENT_LIST);
+
+    /**
+     * The tasks scheduled within an optimistic window that have not been given their sequence
+     * number yet. They are kept apart from the future event list as they are removed when they
+     * are rolled back, and ordered by the tasks that scheduled them until these are committed.
+     */
+    private final TreeSet<ScheduledTask> speculative = new TreeSet<>();
+
+    /**
+     * A mapping of the tasks of the partition to their scheduled tasks.
+     */
+    private final Map<Task, ScheduledTask> taskMap = new HashMap<>();
+
+    /**
+     * The tasks scheduled since the partition has last been run, added to the future event list
+     * by the thread running the partition.
+     */
+    private final ArrayList<ScheduledTask> inbox = new ArrayList<>();
+
+    /**
+     * The earliest task of the inbox.
+     */
+    private ScheduledTask inboxFirst;
+
+    /**
+     * The tasks run and deferred in the window by each node of the partition.
+     */
+    private final Map<Node, NodeHistory> histories = new HashMap<>();
+
+    /**
+     * The tasks scheduled on the partition within the window by other partitions.
+     */
+    private final ArrayList<ScheduledTask> incoming = new ArrayList<>();
+
+    /**
+     * The tasks scheduled on the partition within the window by other partitions and rolled back.
+     */
+    private final ArrayList<ScheduledTask> incomingAntiMessages = new ArrayList<>();
+
+    /**
+     * The tasks scheduled on other partitions within the window, not sent yet.
+     */
+    private final Set<ScheduledTask> outgoing = new LinkedHashSet<>();
+
+    /**
+     * The tasks scheduled on other partitions within the window and rolled back since they have
+     * been sent.
+     */
+    private final ArrayList<ScheduledTask> antiMessages = new ArrayList<>();
+
+    /**
+     * The number of task runs undone by rollbacks.
+     */
+    private long rolledBackTaskCount = 0L;
+
+    /**
+     * The log of the running task.
+     */
+    private TaskLog current;
+
+    /**
+     * The end of the window.
+     */
+    private long windowEnd;
+
+    /**
+     * The task without a node ending the window, null if there is none.
+     */
+    private ScheduledTask barrierTask;
+
+    /**
+     * Adds a scheduled task to the partition.
+     *
+     * @param scheduledTask the scheduled task
+     */
+    private void add(ScheduledTask scheduledTask) {
+      this.taskMap.put(scheduledTask.getTask(), scheduledTask);
+      this.inbox.add(scheduledTask);
+      if (this.inboxFirst == null || scheduledTask.compareTo(this.inboxFirst) < 0) {
+        this.inboxFirst = scheduledTask;
+      }
+    }
+
+    /**
+     * Cancels a task of the partition.
+     *
+     * @param task the task
+     */
+    private void remove(Task task) {
+      ScheduledTask scheduledTask = this.taskMap.remove(task);
+      if (scheduledTask != null) {
+        scheduledTask.cancel();
+      }
+    }
+
+    /**
+     * Gets the earliest task of the partition that has not been cancelled, discarding cancelled
+     * tasks on the way.
+     *
+     * @return the scheduled task or null if there is none
+     */
+    private ScheduledTask peek() {
+      ScheduledTask scheduledTask = this.taskQueue.peek();
+      while (scheduledTask != null && scheduledTask.isCancelled()) {
+        this.taskQueue.poll();
+        scheduledTask = this.taskQueue.peek();
+      }
+      if (this.inboxFirst != null
+          && (scheduledTask == null || this.inboxFirst.compareTo(scheduledTask) < 0)) {
+        scheduledTask = this.inboxFirst;
+      }
+      if (!this.speculative.isEmpty()
+          && (scheduledTask == null || this.speculative.first().compareTo(scheduledTask) < 0)) {
+        scheduledTask = this.speculative.first();
+      }
+      return scheduledTask;
+    }
+
+    /**
+     * Queues a task of the partition.
+     *
+     * @param scheduledTask the scheduled task
+     */
+    private void queue(ScheduledTask scheduledTask) {
+      this.taskMap.put(scheduledTask.getTask(), scheduledTask);
+      if (scheduledTask.isSpeculative()) {
+        this.speculative.add(scheduledTask);
+      } else {
+        this.taskQueue.add(scheduledTask);
+      }
+    }
+
+    @Override
+    public Void call() {
+      currentPartition.set(this);
+      try {
+        for (ScheduledTask scheduledTask : this.inbox) {
+          this.taskQueue.add(scheduledTask);
+        }
+        this.inbox.clear();
+        this.inboxFirst = null;
+        for (ScheduledTask antiMessage : this.incomingAntiMessages) {
+          this.annihilate(antiMessage);
+        }
+        for (ScheduledTask message : this.incoming) {
+          this.deliver(message);
+        }
+        this.incomingAntiMessages.clear();
+        this.incoming.clear();
+        if (optimistic) {
+          this.truncate();
+        }
+
+        ScheduledTask scheduledTask;
+        while ((scheduledTask = this.peek()) != null
+            && scheduledTask.getScheduledTime() < this.windowEnd
+            && (this.barrierTask == null || scheduledTask.compareTo(this.barrierTask) < 0)) {
+          if (scheduledTask.isSpeculative()) {
+            this.speculative.pollFirst();
+          } else {
+            this.taskQueue.poll();
+          }
+          this.taskMap.remove(scheduledTask.getTask(), scheduledTask);
+          Node node = scheduledTask.getTask().getNode();
+          NodeHistory history = this.histories.computeIfAbsent(node, key -> new NodeHistory());
+          if (history.isStopped(scheduledTask)) {
+            history.deferred.add(scheduledTask);
+            continue;
+          }
+          this.current = new TaskLog(
+              scheduledTask, history.stopTask, optimistic ? node.snapshot() : null);
+          scheduledTask.getTask().run();
+          if (this.current.barrierTime < this.windowEnd && (history.stopTask == null
+              || this.current.barrierTask.compareTo(history.stopTask) < 0)) {
+            // The node mints before the end of the window
+            history.stopTask = this.current.barrierTask;
+          }
+          history.logs.add(this.current);
+        }
+      } finally {
+        this.current = null;
+        currentPartition.remove();
+      }
+      return null;
+    }
+
+    /**
+     * Collects the logs of the tasks run in the window and queues the deferred tasks again.
+     *
+     * @param pendingLogs the logs to add to
+     */
+    private void endWindow(List<TaskLog> pendingLogs) {
+      for (NodeHistory history : this.histories.values()) {
+        for (TaskLog log : history.logs) {
+          log.snapshot = null;
+          log.children = null;
+          pendingLogs.add(log);
+        }
+        for (ScheduledTask deferredTask : history.deferred) {
+          this.queue(deferredTask);
+        }
+      }
+      this.histories.clear();
+    }
+
+    /**
+     * Delivers a task scheduled within the optimistic window, rolling its node back if it has
+     * already run a later task.
+     *
+     * @param scheduledTask the scheduled task
+     */
+    private void deliver(ScheduledTask scheduledTask) {
+      Node node = scheduledTask.getTask().getNode();
+      if (getPartition(node) != this) {
+        this.outgoing.add(scheduledTask);
+        return;
+      }
+      this.rollback(node, scheduledTask);
+      this.queue(scheduledTask);
+    }
+
+    /**
+     * Cancels a task scheduled within the optimistic window by a task that has been rolled back,
+     * rolling its node back if it has already been run.
+     *
+     * @param scheduledTask the scheduled task
+     */
+    private void annihilate(ScheduledTask scheduledTask) {
+      Node node = scheduledTask.getTask().getNode();
+      if (getPartition(node) != this) {
+        if (!this.outgoing.remove(scheduledTask)) {
+          this.antiMessages.add(scheduledTask);
+        }
+        return;
+      }
+      this.rollback(node, scheduledTask);
+      if (this.taskMap.remove(scheduledTask.getTask(), scheduledTask)) {
+        this.speculative.remove(scheduledTask);
+      } else {
+        NodeHistory history = this.histories.get(node);
+        if (history != null) {
+          history.deferred.remove(scheduledTask);
+        }
+      }
+    }
+
+    /**
+     * Rolls a node back to its state before the provided task, queueing the tasks it has run
+     * since again and cancelling the tasks they have scheduled within the window.
+     *
+     * @param node          the node
+     * @param scheduledTask the task the node is rolled back to
+     */
+    private void rollback(Node node, ScheduledTask scheduledTask) {
+      NodeHistory history = this.histories.get(node);
+      if (history == null) {
+        return;
+      }
+      ArrayList<TaskLog> logs = history.logs;
+      int from = logs.size();
+      while (from > 0 && logs.get(from - 1).scheduledTask.compareTo(scheduledTask) >= 0) {
+        from--;
+      }
+      this.rollback(node, history, from);
+    }
+
+    /**
+     * Rolls the nodes back to their state before the end of the window.
+     */
+    private void truncate() {
+      for (Map.Entry<Node, NodeHistory> entry : this.histories.entrySet()) {
+        ArrayList<TaskLog> logs = entry.getValue().logs;
+        int from = logs.size();
+        while (from > 0 && logs.get(from - 1).scheduledTask.getScheduledTime() >= this.windowEnd) {
+          from--;
+        }
+        this.rollback(entry.getKey(), entry.getValue(), from);
+      }
+    }
+
+    /**
+     * Rolls a node back to its state before the task of the provided log.
+     *
+     * @param node    the node
+     * @param history the history of the node
+     * @param from    the index of the first log to undo
+     */
+    private void rollback(Node node, NodeHistory history, int from) {
+      ArrayList<TaskLog> logs = history.logs;
+      if (from == logs.size()) {
+        return;
+      }
+      List<TaskLog> undone = new ArrayList<>(logs.subList(from, logs.size()));
+      logs.subList(from, logs.size()).clear();
+      node.restore(undone.get(0).snapshot);
+      history.stopTask = undone.get(0).stopTask;
+      this.rolledBackTaskCount += undone.size();
+      for (int i = undone.size() - 1; i >= 0; i--) {
+        TaskLog log = undone.get(i);
+        this.queue(log.scheduledTask);
+        for (ScheduledTask child : log.children) {
+          this.annihilate(child);
+        }
+      }
+      // The tasks deferred past a task the node no longer stops at are run again
+      history.deferred.removeIf(deferredTask -> {
+        if (history.isStopped(deferredTask)) {
+          return false;
+        }
+        this.queue(deferredTask);
+        return true;
+      });
+    }
+
+    /**
+     * Logs a task scheduled by the running task.
+     *
+     * @param task the task
+     * @param time the time in milliseconds
+     */
+    private void schedule(Task task, long time) {
+      if (task.getNode() == null) {
+        if (time < this.current.barrierTime) {
+          // Ordered as the tasks scheduled within the optimistic window, after the tasks that
+          // already have a sequence number at the same time
+          this.current.barrierTime = time;
+          this.current.barrierTask = new ScheduledTask(task, time, this.current.scheduledTask,
+              this.current.children == null ? 0 : this.current.children.size());
+        }
+        if (optimistic && time + lookahead < this.windowEnd) {
+          // The block may reach other nodes within the window, which ends before it does
+          this.windowEnd = time + lookahead;
+          this.truncate();
+        }
+      } else if (time < this.windowEnd) {
+        if (!optimistic) {
+          throw new IllegalStateException("A task is scheduled at " + time
+              + " within the lookahead of the window ending at " + this.windowEnd);
+        }
+        ScheduledTask child = new ScheduledTask(
+            task, time, this.current.scheduledTask, this.current.children.size());
+        this.current.children.add(child);
+        this.log(() -> commitScheduledTask(child));
+        this.deliver(child);
+        return;
+      }
+      this.log(() -> ParallelTimer.this.schedule(task, time));
+    }
+
+    /**
+     * Logs an action of the running task.
+     *
+     * @param action the action
+     */
+    private void log(Runnable action) {
+      this.current.actions.add(action);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.settings.NetworkConfiguration.REGION_LIST;
+
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import simblock.block.Block;
+import simblock.node.Node;
+
+/**
+ * The type Propagation statistics computes the propagation of every block while the simulation
+ * runs, from the arrivals observed by the {@link Simulator}, instead of from output.json after the
+ * simulation. The arrivals are observed in the order of time, so the time a block reaches a given
+ * share of the nodes is the time of the arrival that makes the count of nodes reach that share;
+ * only counters and a few times are kept per block.
+ *
+ * <p>The summary is written as CSV, one line per block with the times relative to the minting of
+ * the block, in milliseconds:
+ *
+ * <p><em>block-id, height, minter-id, minting-time, nodes, time-to-50%, time-to-90%, time-to-100%,
+ * time-to-last, then the time to the last node of each region</em>
+ *
+ * <p>The time to a share of the nodes is empty if the block did not reach that share, the
+ * time-to-last is the time to the last node reached, as the penetration time of simtime_parse.py.
+ */
+public class PropagationStatistics implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The shares of the nodes the time to reach is recorded for.
+   */
+  private static final double[] SHARES = {0.5, 0.9, 1.0};
+
+  /**
+   * The propagation of the blocks indexed by their id, null for the blocks that have not been
+   * seen.
+   */
+  private final ArrayList<BlockPropagation> propagations = new ArrayList<>();
+
+  /**
+   * Records the arrival of a block at a node.
+   *
+   * @param block    the block
+   * @param node     the node
+   * @param time     the arrival time
+   * @param numNodes the number of simulated nodes
+   */
+  public void observe(Block block, Node node, long time, int numNodes) {
+    int blockId = block.getId();
+    while (this.propagations.size() <= blockId) {
+      this.propagations.add(null);
+    }
+    BlockPropagation propagation = this.propagations.get(blockId);
+    if (propagation == null) {
+      propagation = new BlockPropagation(block, numNodes);
+      this.propagations.set(blockId, propagation);
+    }
+    propagation.observe(node, time);
+  }
+
+  /**
+   * Writes the summary of all blocks seen and closes the writer.
+   *
+   * @param writer the writer
+   */
+  public void write(PrintWriter writer) {
+    writer.print("block-id,height,minter-id,minting-time,nodes,"
+        + "time-to-50%,time-to-90%,time-to-100%,time-to-last");
+    for (String region : REGION_LIST) {
+      writer.print("," + region);
+    }
+    writer.println();
+    for (BlockPropagation propagation : this.propagations) {
+      if (propagation != null) {
+        propagation.write(writer);
+      }
+    }
+    writer.close();
+  }
+
+  /**
+   * The propagation of one block.
+   */
+  private static class BlockPropagation implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int blockId;
+    private final int height;
+    private final int minterId;
+    private final long mintingTime;
+
+    /**
+     * The number of nodes needed to reach each of the {@link #SHARES}.
+     */
+    private final int[] thresholds;
+
+    /**
+     * The time each of the {@link #SHARES} was reached, -1 if not reached.
+     */
+    private final long[] shareTimes;
+
+    /**
+     * The time of the last arrival in each region, -1 if no node of the region was reached.
+     */
+    private final long[] regionTimes;
+
+    /**
+     * The ids of the nodes reached.
+     */
+    private final BitSet nodes = new BitSet();
+
+    private int count = 0;
+    private long lastTime = -1;
+
+    BlockPropagation(Block block, int numNodes) {
+      this.blockId = block.getId();
+      this.height = block.getHeight();
+      this.minterId = block.getMinter() != null ? block.getMinter().getNodeID() : -1;
+      this.mintingTime = block.getTime();
+      this.thresholds = new int[SHARES.length];
+      for (int i = 0; i < SHARES.length; i++) {
+        this.thresholds[i] = (int) Math.ceil(SHARES[i] * numNodes);
+      }
+      this.shareTimes = new long[SHARES.length];
+      Arrays.fill(this.shareTimes, -1);
+      this.regionTimes = new long[REGION_LIST.size()];
+      Arrays.fill(this.regionTimes, -1);
+    }
+
+    void observe(Node node, long time) {
+      if (this.nodes.get(node.getNodeID())) {
+        return;
+      }
+      this.nodes.set(node.getNodeID());
+      this.count++;
+      this.lastTime = time;
+      for (int i = 0; i < SHARES.length; i++) {
+        if (this.count == this.thresholds[i]) {
+          this.shareTimes[i] = time;
+        }
+      }
+      this.regionTimes[node.getRegion()] = time;
+    }
+
+    void write(PrintWriter writer) {
+      StringBuilder line = new StringBuilder();
+      line.append(this.blockId).append(',').append(this.height).append(',')
+          .append(this.minterId).append(',').append(this.mintingTime).append(',')
+          .append(this.count);
+      for (long time : this.shareTimes) {
+        this.appendTime(line, time);
+      }
+      this.appendTime(line, this.lastTime);
+      for (long time : this.regionTimes) {
+        this.appendTime(line, time);
+      }
+      writer.println(line);
+    }
+
+    private void appendTime(StringBuilder line, long time) {
+      line.append(',');
+      if (time >= 0) {
+        line.append(time - this.mintingTime);
+      }
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import simblock.block.Block;
+
+/**
+ * The type Propagation tracker records the arrivals of the most recently observed blocks at the
+ * nodes. Once a block leaves the window of observed blocks or at the end of the simulation, its
+ * propagation times are added to {@link LatencySketch}es of the whole run, and printed if
+ * requested; the run is summarized at the end, so memory and output do not grow with the number of
+ * blocks. A block is found by its id and the arrivals are stored by node id in preallocated
+ * primitive arrays, reused by the next block once a block leaves the window, so an arrival costs
+ * the same whatever the size of the window.
+ */
+public class PropagationTracker implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The propagations of the observed blocks, a ring in the order the blocks were first observed.
+   */
+  private final Propagation[] window;
+
+  /**
+   * Whether the propagation of every block is printed.
+   */
+  private final boolean printPropagation;
+
+  /**
+   * The propagation times of all the arrivals of the blocks that left the window.
+   */
+  private final LatencySketch arrivals = new LatencySketch();
+
+  /**
+   * The propagation times to the last node reached of the blocks that left the window.
+   */
+  private final LatencySketch lastArrivals = new LatencySketch();
+
+  /**
+   * The index of the oldest observed block in the ring.
+   */
+  private int first = 0;
+
+  /**
+   * The number of observed blocks.
+   */
+  private int size = 0;
+
+  /**
+   * The index in the ring plus one of the propagation of each block by its id, 0 for the blocks
+   * not observed.
+   */
+  private int[] indexByBlockId = new int[64];
+
+  /**
+   * Instantiates a new Propagation tracker.
+   *
+   * @param windowSize       the number of blocks observed at once, the oldest one leaves the
+   *                         window to observe a new one beyond
+   * @param printPropagation whether the propagation of every block is printed when it leaves the
+   *                         window
+   */
+  public PropagationTracker(int windowSize, boolean printPropagation) {
+    if (windowSize < 1) {
+      throw new IllegalArgumentException("Invalid observation window " + windowSize);
+    }
+    this.window = new Propagation[windowSize];
+    this.printPropagation = printPropagation;
+  }
+
+  /**
+   * Records the arrival of a block at a node.
+   *
+   * @param block  the block
+   * @param nodeId the id of the node
+   * @param time   the time of the arrival
+   */
+  public void observe(Block block, int nodeId, long time) {
+    int blockId = block.getId();
+    if (blockId >= this.indexByBlockId.length) {
+      this.indexByBlockId = Arrays.copyOf(
+          this.indexByBlockId, Math.max(blockId + 1, this.indexByBlockId.length * 2));
+    }
+    int index = this.indexByBlockId[blockId] - 1;
+    if (index < 0) {
+      // The block has not been seen by any node
+      Propagation propagation = null;
+      if (this.size == this.window.length) {
+        // The window is full, log and remove the oldest block by FIFO principle
+        propagation = this.window[this.first];
+        this.leave(propagation);
+        this.indexByBlockId[propagation.block.getId()] = 0;
+        propagation.clear();
+        this.first = (this.first + 1) % this.window.length;
+        this.size--;
+      }
+      index = (this.first + this.size) % this.window.length;
+      if (propagation == null) {
+        propagation = new Propagation();
+      }
+      propagation.block = block;
+      this.window[index] = propagation;
+      this.indexByBlockId[blockId] = index + 1;
+      this.size++;
+    }
+    this.window[index].put(nodeId, time - block.getTime());
+  }
+
+  /**
+   * Adds the propagation times of a block leaving the window to the sketches and prints them if
+   * requested.
+   */
+  private void leave(Propagation propagation) {
+    long last = 0;
+    for (int i = 0; i < propagation.count; i++) {
+      long time = propagation.times[propagation.nodeIds[i]];
+      this.arrivals.add(time);
+      last = Math.max(last, time);
+    }
+    this.lastArrivals.add(last);
+    if (this.printPropagation) {
+      propagation.print();
+    }
+  }
+
+  /**
+   * Makes all the observed blocks leave the window, from the oldest, and prints the summary of
+   * the propagation times of the run in the format:
+   *
+   * <p><em>propagation time of the arrivals: sketch</em>
+   *
+   * <p><em>propagation time to the last node: sketch</em>
+   *
+   * <p>the sketches in the format of {@link LatencySketch#toString()}, in milliseconds.
+   */
+  public void printAll() {
+    while (this.size > 0) {
+      Propagation propagation = this.window[this.first];
+      this.leave(propagation);
+      this.indexByBlockId[propagation.block.getId()] = 0;
+      this.window[this.first] = null;
+      this.first = (this.first + 1) % this.window.length;
+      this.size--;
+    }
+    System.out.println("propagation time of the arrivals: " + this.arrivals);
+    System.out.println("propagation time to the last node: " + this.lastArrivals);
+  }
+
+  /**
+   * The propagation of an observed block.
+   */
+  private static class Propagation implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The block.
+     */
+    private Block block;
+
+    /**
+     * The propagation time of the block to each node by node id, -1 if not reached.
+     */
+    private long[] times = new long[0];
+
+    /**
+     * The ids of the nodes reached, in the order they were first reached.
+     */
+    private int[] nodeIds = new int[0];
+
+    /**
+     * The number of nodes reached.
+     */
+    private int count = 0;
+
+    /**
+     * Records the propagation time to a node, keeping the order of the nodes when a node is
+     * reached again.
+     */
+    void put(int nodeId, long propagationTime) {
+      if (nodeId >= this.times.length) {
+        int length = this.times.length;
+        this.times = Arrays.copyOf(this.times, Math.max(nodeId + 1, length * 2));
+        Arrays.fill(this.times, length, this.times.length, -1);
+      }
+      if (this.times[nodeId] < 0) {
+        if (this.count == this.nodeIds.length) {
+          this.nodeIds = Arrays.copyOf(this.nodeIds, Math.max(16, this.count * 2));
+        }
+        this.nodeIds[this.count++] = nodeId;
+      }
+      this.times[nodeId] = propagationTime;
+    }
+
+    /**
+     * Clears the propagation to reuse it for another block.
+     */
+    void clear() {
+      for (int i = 0; i < this.count; i++) {
+        this.times[this.nodeIds[i]] = -1;
+      }
+      this.count = 0;
+      this.block = null;
+    }
+
+    /**
+     * Prints the propagation in the format:
+     *
+     * <p><em>node_ID, propagation_time</em>
+     *
+     * <p><em>propagation_time</em>: The time from when the block of the block ID is generated to
+     * when the node of the <em>node_ID</em> is reached.
+     */
+    void print() {
+      // Print block and its height
+      //TODO block does not have a toString method, what is printed here
+      System.out.println(this.block + ":" + this.block.getHeight());
+      for (int i = 0; i < this.count; i++) {
+        System.out.println(this.nodeIds[i] + "," + this.times[this.nodeIds[i]]);
+      }
+      System.out.println();
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.settings.NetworkConfiguration.REGION_LIST;
+
+import java.io.PrintWriter;
+import java.io.Serializable;
+import simblock.block.Block;
+import simblock.node.Node;
+
+/**
+ * The type Region latency histograms records the delay of the arrivals of the blocks at the
+ * nodes, from the minting of the block, in a {@link LatencySketch} per region of the minter and
+ * region of the receiving node, while the simulation runs. The arrival of a block at its minter is
+ * not recorded.
+ *
+ * <p>The summary is written as CSV, one line per pair of regions with at least one arrival, the
+ * times in milliseconds:
+ *
+ * <p><em>minter-region, receiver-region, arrivals, mean, p50, p90, p99, max</em>
+ *
+ * <p>and the histograms as CSV, one line per non-empty bucket:
+ *
+ * <p><em>minter-region, receiver-region, from, to, count</em>
+ */
+public class RegionLatencyHistograms implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The delays indexed by the region of the minter and the region of the receiving node.
+   */
+  private final LatencySketch[][] sketches =
+      new LatencySketch[REGION_LIST.size()][REGION_LIST.size()];
+
+  /**
+   * Records the arrival of a block at a node.
+   *
+   * @param block the block
+   * @param node  the node
+   * @param time  the arrival time
+   */
+  public void observe(Block block, Node node, long time) {
+    Node minter = block.getMinter();
+    if (minter == null || minter == node) {
+      return;
+    }
+    LatencySketch sketch = this.sketches[minter.getRegion()][node.getRegion()];
+    if (sketch == null) {
+      sketch = new LatencySketch();
+      this.sketches[minter.getRegion()][node.getRegion()] = sketch;
+    }
+    sketch.add(time - block.getTime());
+  }
+
+  /**
+   * Writes the summary of the delays by pair of regions and closes the writer.
+   *
+   * @param writer the writer
+   */
+  public void writeSummary(PrintWriter writer) {
+    writer.println("minter-region,receiver-region,arrivals,mean,p50,p90,p99,max");
+    for (int from = 0; from < REGION_LIST.size(); from++) {
+      for (int to = 0; to < REGION_LIST.size(); to++) {
+        LatencySketch sketch = this.sketches[from][to];
+        if (sketch != null) {
+          writer.println(REGION_LIST.get(from) + "," + REGION_LIST.get(to) + ","
+              + sketch.getCount() + "," + Math.round(sketch.getMean()) + ","
+              + sketch.getQuantile(0.5) + "," + sketch.getQuantile(0.9) + ","
+              + sketch.getQuantile(0.99) + "," + sketch.getMax());
+        }
+      }
+    }
+    writer.close();
+  }
+
+  /**
+   * Writes the histograms of the delays by pair of regions and closes the writer.
+   *
+   * @param writer the writer
+   */
+  public void writeHistograms(PrintWriter writer) {
+    writer.println("minter-region,receiver-region,from,to,count");
+    for (int from = 0; from < REGION_LIST.size(); from++) {
+      for (int to = 0; to < REGION_LIST.size(); to++) {
+        LatencySketch sketch = this.sketches[from][to];
+        if (sketch != null) {
+          sketch.writeHistogram(writer, REGION_LIST.get(from) + "," + REGION_LIST.get(to));
+        }
+      }
+    }
+    writer.close();
+  }
+}
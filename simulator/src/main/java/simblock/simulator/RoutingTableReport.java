@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import simblock.node.Node;
+import simblock.node.routing.BitcoinCoreTable;
+
+/**
+ * The type Routing table report writes the routing table of every node once the network is
+ * constructed, one JSON object per line:
+ *
+ * <p><em>{"node_id": id,"region": region,"neighbors_num": n,"outbound_table_num": n,
+ * "outbound_table": [ids],"outbound_all_regions": [regions],"outbound_regions": [distinct
+ * regions],"inbound_table_num": n,"inbound_table": [ids],"inbound_all_regions": [regions],
+ * "inbound_regions": [distinct regions]}</em>
+ *
+ * <p>The lines are the ones formerly printed to the standard output with a "; " prefix. The
+ * numbers are encoded straight into the writer, so no string is built per node.
+ */
+public class RoutingTableReport {
+  private final Writer writer;
+
+  /**
+   * The digits of the number being written, from the end.
+   */
+  private final char[] digits = new char[11];
+
+  /**
+   * The distinct regions of the table being written.
+   */
+  private final BitSet regions = new BitSet();
+
+  /**
+   * Instantiates a new Routing table report.
+   *
+   * @param writer the writer of the report
+   */
+  public RoutingTableReport(Writer writer) {
+    this.writer = writer;
+  }
+
+  /**
+   * Writes the routing table of a node.
+   *
+   * @param node the node, with a {@link BitcoinCoreTable}
+   * @throws IOException if the report cannot be written
+   */
+  public void write(Node node) throws IOException {
+    BitcoinCoreTable routingTable = (BitcoinCoreTable) node.getRoutingTable();
+    ArrayList<Node> outbound = routingTable.getOutbound();
+    ArrayList<Node> inbound = routingTable.getInbound();
+    this.writer.write("{\"node_id\": ");
+    this.writeInt(node.getNodeID());
+    this.writer.write(",\"region\": ");
+    this.writeInt(node.getRegion());
+    this.writer.write(",\"neighbors_num\": ");
+    this.writeInt(outbound.size() + inbound.size());
+    this.writeTable("outbound", outbound);
+    this.writeTable("inbound", inbound);
+    this.writer.write("}\n");
+  }
+
+  private void writeTable(String name, ArrayList<Node> table) throws IOException {
+    this.writer.write(",\"");
+    this.writer.write(name);
+    this.writer.write("_table_num\": ");
+    this.writeInt(table.size());
+    this.writer.write(",\"");
+    this.writer.write(name);
+    this.writer.write("_table\": [");
+    for (int i = 0; i < table.size(); i++) {
+      if (i > 0) {
+        this.writer.write(',');
+      }
+      this.writeInt(table.get(i).getNodeID());
+    }
+    this.writer.write("],\"");
+    this.writer.write(name);
+    this.writer.write("_all_regions\": [");
+    this.regions.clear();
+    for (int i = 0; i < table.size(); i++) {
+      if (i > 0) {
+        this.writer.write(',');
+      }
+      this.writeInt(table.get(i).getRegion());
+      this.regions.set(table.get(i).getRegion());
+    }
+    this.writer.write("],\"");
+    this.writer.write(name);
+    this.writer.write("_regions\": [");
+    for (int region = this.regions.nextSetBit(0); region >= 0;
+         region = this.regions.nextSetBit(region + 1)) {
+      if (region > this.regions.nextSetBit(0)) {
+        this.writer.write(", ");
+      }
+      this.writeInt(region);
+    }
+    this.writer.write(']');
+  }
+
+  /**
+   * Writes the decimal digits of a non-negative number.
+   */
+  private void writeInt(int value) throws IOException {
+    int start = this.digits.length;
+    do {
+      this.digits[--start] = (char) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    this.writer.write(this.digits, start, this.digits.length - start);
+  }
+
+  /**
+   * Closes the report.
+   *
+   * @throws IOException if the report cannot be closed
+   */
+  public void close() throws IOException {
+    this.writer.close();
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.Serializable;
+import simblock.task.Task;
+
+/**
+ * Represents a {@link Task} that is scheduled to be executed. Instances are stored in a
+ * {@link FutureEventList}.
+ */
+public final class ScheduledTask implements Comparable<ScheduledTask>, Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private Task task;
+  private long scheduledTime;
+
+  /**
+   * The insertion sequence number, used to order tasks scheduled for the same time.
+   */
+  private long sequence;
+
+  /**
+   * Whether the task has been cancelled and is to be skipped.
+   */
+  private boolean cancelled = false;
+
+  /**
+   * The task that scheduled this task within an optimistic window of the {@link ParallelTimer},
+   * null once the task has been given a sequence number.
+   */
+  private ScheduledTask parent;
+
+  /**
+   * The number of tasks the parent had scheduled before this task.
+   */
+  private int index;
+
+  /**
+   * The next task in the same bucket, used by list based event lists such as
+   * {@link CalendarEventList}.
+   */
+  ScheduledTask next;
+
+  /**
+   * Instantiates a new ScheduledTask.
+   *
+   * @param task          - the task to be executed
+   * @param scheduledTime - the simulation time at which the task is to be executed
+   * @param sequence      - the monotonically increasing insertion sequence number
+   */
+  ScheduledTask(Task task, long scheduledTime, long sequence) {
+    this.task = task;
+    this.scheduledTime = scheduledTime;
+    this.sequence = sequence;
+    this.parent = null;
+    this.index = 0;
+  }
+
+  /**
+   * Instantiates a new ScheduledTask scheduled within an optimistic window, before its sequence
+   * number is known. It is ordered after the tasks with a sequence number scheduled for the same
+   * time, and as the task scheduling it among the tasks without one, which is the order of the
+   * sequence numbers they are given once the window is committed.
+   *
+   * @param task          - the task to be executed
+   * @param scheduledTime - the simulation time at which the task is to be executed
+   * @param parent        - the task that scheduled the task
+   * @param index         - the number of tasks the parent had scheduled before
+   */
+  ScheduledTask(Task task, long scheduledTime, ScheduledTask parent, int index) {
+    this.task = task;
+    this.scheduledTime = scheduledTime;
+    this.sequence = Long.MAX_VALUE;
+    this.parent = parent;
+    this.index = index;
+  }
+
+  /**
+   * Reuses a scheduled task that has been run or cancelled for another task.
+   *
+   * @param task          - the task to be executed
+   * @param scheduledTime - the simulation time at which the task is to be executed
+   * @param sequence      - the monotonically increasing insertion sequence number
+   */
+  void reset(Task task, long scheduledTime, long sequence) {
+    this.task = task;
+    this.scheduledTime = scheduledTime;
+    this.sequence = sequence;
+    this.cancelled = false;
+    this.parent = null;
+    this.index = 0;
+  }
+
+  /**
+   * Gets the task.
+   *
+   * @return the {@link Task} instance
+   */
+  public Task getTask() {
+    return this.task;
+  }
+
+  /**
+   * Gets the scheduled time at which the task is to be executed.
+   *
+   * @return the scheduled time
+   */
+  public long getScheduledTime() {
+    return this.scheduledTime;
+  }
+
+  /**
+   * Gets the insertion sequence number.
+   *
+   * @return the sequence number
+   */
+  public long getSequence() {
+    return this.sequence;
+  }
+
+  /**
+   * Gives a task scheduled within an optimistic window its sequence number, once the task
+   * scheduling it is committed. The tasks with a sequence number have all been scheduled before
+   * and the ones without are scheduled after, so the order of the task among the tasks that are
+   * still to be committed is unchanged.
+   *
+   * @param sequence the sequence number
+   */
+  void setSequence(long sequence) {
+    this.sequence = sequence;
+    this.parent = null;
+  }
+
+  /**
+   * Checks whether the task has been scheduled within an optimistic window and has not been
+   * given its sequence number yet.
+   *
+   * @return true if the task has no sequence number
+   */
+  boolean isSpeculative() {
+    return this.parent != null;
+  }
+
+  /**
+   * Marks the task as cancelled.
+   */
+  void cancel() {
+    this.cancelled = true;
+  }
+
+  /**
+   * Checks whether the task has been cancelled.
+   *
+   * @return true if the task is not to be executed
+   */
+  public boolean isCancelled() {
+    return this.cancelled;
+  }
+
+  /**
+   * Compares the two scheduled tasks. Tasks scheduled for the same time are ordered by their
+   * insertion sequence, so the order of execution is the same for every run.
+   *
+   * @param o other task
+   * @return 1 if self is executed later, 0 if the same task and -1 if self is to be executed
+   *     before.
+   */
+  public int compareTo(ScheduledTask o) {
+    int order = Long.compare(this.scheduledTime, o.scheduledTime);
+    if (order != 0) {
+      return order;
+    }
+    order = Long.compare(this.sequence, o.sequence);
+    if (order != 0 || this.parent == null || o.parent == null) {
+      return order;
+    }
+    order = this.parent.compareTo(o.parent);
+    return order != 0 ? order : Integer.compare(this.index, o.index);
+  }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.settings.SimulationConfiguration.ASYNC_EVENT_WRITER;
+import static simblock.settings.SimulationConfiguration.BINARY_EVENT_LOG;
+import static simblock.settings.SimulationConfiguration.COMPRESSED_OUTPUT;
+import static simblock.settings.SimulationConfiguration.DELTA_GRAPH;
+import static simblock.settings.SimulationConfiguration.EVENT_STORE;
+import static simblock.settings.SimulationConfiguration.MAPPED_OUTPUT;
+import static simblock.settings.SimulationConfiguration.NUM_OF_THREADS;
+import static simblock.settings.SimulationConfiguration.OPTIMISTIC_WINDOW;
+import static simblock.settings.SimulationConfiguration.TASK_POOLING;
+import static simblock.simulator.Network.getMinimumLatency;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import simblock.block.Block;
+import simblock.task.MessageTaskPool;
+
+/**
+ * The type Simulation context owns the state of a single simulation run: the clock and future
+ * event list ({@link Timer}), the simulated nodes ({@link Simulator}), the random number
+ * generator and the output files. It is handed to every {@link
+ * simblock.node.Node} and reached from tasks, routing tables and blocks through their node, so
+ * independent simulations can run concurrently in one JVM, each with its own context.
+ */
+public class SimulationContext implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The random number generator of the simulation.
+   */
+  private final Random random;
+
+  /**
+   * The timer scheduling the tasks of the simulation.
+   */
+  private final Timer timer;
+
+  /**
+   * The simulator maintaining the simulated nodes and block propagation.
+   */
+  private final Simulator simulator;
+
+  /**
+   * Whether the message tasks and the scheduled tasks are recycled.
+   */
+  private final boolean taskPooling;
+
+  /**
+   * The pool recycling the message tasks.
+   */
+  private transient MessageTaskPool messageTaskPool;
+
+  /**
+   * Output path.
+   */
+  private transient URI outFileUri;
+
+  /**
+   * The listeners of the events of the simulation, the output writer among them.
+   */
+  private transient SimulationEventRegistry eventRegistry;
+
+  /**
+   * The delta-encoded snapshots of the topology, null unless
+   * {@link simblock.settings.SimulationConfiguration#DELTA_GRAPH} is set.
+   */
+  private transient TopologyLog topologyLog;
+
+  /**
+   * The static output writer.
+   */
+  //TODO use logger
+  private transient PrintWriter staticJsonFile;
+
+  /**
+   * The blocks of the simulation indexed by their id.
+   */
+  private final BlockRegistry blockRegistry = new BlockRegistry();
+
+  /**
+   * Instantiates a new Simulation context and opens its output files.
+   *
+   * @param seed       the seed of the random number generator
+   * @param outFileUri the output directory
+   * @throws IOException if the output files cannot be opened
+   */
+  public SimulationContext(long seed, URI outFileUri) throws IOException {
+    this(seed, outFileUri, TASK_POOLING);
+  }
+
+  /**
+   * Instantiates a new Simulation context recycling the tasks or not, whatever the
+   * {@link simblock.settings.SimulationConfiguration#TASK_POOLING}, and opens its output files.
+   *
+   * @param seed        the seed of the random number generator
+   * @param outFileUri  the output directory
+   * @param taskPooling whether the message tasks and the scheduled tasks are recycled
+   * @throws IOException if the output files cannot be opened
+   */
+  public SimulationContext(long seed, URI outFileUri, boolean taskPooling) throws IOException {
+    this.random = new Random(seed);
+    this.taskPooling = taskPooling;
+    if (NUM_OF_THREADS > 1) {
+      this.timer = new ParallelTimer(NUM_OF_THREADS, getMinimumLatency(), OPTIMISTIC_WINDOW);
+    } else {
+      this.timer = new Timer(EVENT_STORE ? new EventStore(this) : null, taskPooling);
+    }
+    this.simulator = new Simulator(this.timer);
+    this.resume(outFileUri);
+  }
+
+  /**
+   * Creates the pool, opens the output files and registers the output writer, also used for a
+   * context read from a {@link Checkpoint}; listeners registered before a checkpoint are not
+   * restored.
+   *
+   * @param outFileUri the output directory
+   * @throws IOException if the output files cannot be opened
+   */
+  void resume(URI outFileUri) throws IOException {
+    this.messageTaskPool = new MessageTaskPool(this.taskPooling && NUM_OF_THREADS == 1);
+    this.outFileUri = outFileUri;
+    this.eventRegistry = new SimulationEventRegistry(this.timer);
+    // The event file of the other format left by an earlier run would be read as the output of
+    // this one
+    if (BINARY_EVENT_LOG) {
+      this.deleteOutputFile("./output.json");
+      this.eventRegistry.register(new EventFilter(
+          new BinaryEventLog(new File(outFileUri.resolve("./output.bin")))));
+    } else {
+      Files.deleteIfExists(new File(outFileUri.resolve("./output.bin")).toPath());
+      JsonEventWriter jsonEventWriter =
+          new JsonEventWriter(this.openOutputFile("./output.json"));
+      this.eventRegistry.register(new EventFilter(
+          ASYNC_EVENT_WRITER ? new AsyncEventListener(jsonEventWriter) : jsonEventWriter));
+    }
+    if (DELTA_GRAPH) {
+      // Not filtered, the log needs every change of the topology
+      this.topologyLog = new TopologyLog(this.openOutputFile("./graph/topology.txt"));
+      this.eventRegistry.register(this.topologyLog);
+    }
+    this.staticJsonFile = new PrintWriter(this.openOutputFile("./static.json"));
+  }
+
+  /**
+   * Opens a text file of the output directory. With
+   * {@link simblock.settings.SimulationConfiguration#COMPRESSED_OUTPUT} the file is written with
+   * a .gz suffix and compressed by the background thread of an {@link AsyncEventWriter},
+   * otherwise it is memory mapped if
+   * {@link simblock.settings.SimulationConfiguration#MAPPED_OUTPUT} is set. The file of the other
+   * variant left by an earlier run is deleted, so it is not read as the output of this run.
+   *
+   * @param path the path of the file relative to the output directory
+   * @return the buffered, mapped or compressing writer
+   * @throws IOException if the file cannot be opened
+   */
+  public Writer openOutputFile(String path) throws IOException {
+    File file = new File(this.outFileUri.resolve(path));
+    File compressedFile = new File(file.getPath() + ".gz");
+    if (COMPRESSED_OUTPUT) {
+      Files.deleteIfExists(file.toPath());
+      return new AsyncEventWriter(new OutputStreamWriter(new GZIPOutputStream(
+          new FileOutputStream(compressedFile), 1 << 16), StandardCharsets.UTF_8));
+    }
+    Files.deleteIfExists(compressedFile.toPath());
+    if (MAPPED_OUTPUT) {
+      return new MappedFileWriter(file);
+    }
+    return new BufferedWriter(new FileWriter(file));
+  }
+
+  /**
+   * Deletes a text file of the output directory, uncompressed and compressed.
+   *
+   * @param path the path of the file relative to the output directory
+   * @throws IOException if the file cannot be deleted
+   */
+  private void deleteOutputFile(String path) throws IOException {
+    File file = new File(this.outFileUri.resolve(path));
+    Files.deleteIfExists(file.toPath());
+    Files.deleteIfExists(new File(file.getPath() + ".gz").toPath());
+  }
+
+  /**
+   * Gets the random number generator.
+   *
+   * @return the random
+   */
+  public Random getRandom() {
+    return this.random;
+  }
+
+  /**
+   * Gets the timer.
+   *
+   * @return the timer
+   */
+  public Timer getTimer() {
+    return this.timer;
+  }
+
+  /**
+   * Gets the simulator.
+   *
+   * @return the simulator
+   */
+  public Simulator getSimulator() {
+    return this.simulator;
+  }
+
+  /**
+   * Gets the message task pool.
+   *
+   * @return the message task pool
+   */
+  public MessageTaskPool getMessageTaskPool() {
+    return this.messageTaskPool;
+  }
+
+  /**
+   * Gets the output directory.
+   *
+   * @return the output directory
+   */
+  public URI getOutFileUri() {
+    return this.outFileUri;
+  }
+
+  /**
+   * Gets the registry of the event listeners, through which the events of the simulation are
+   * raised. The output writer is registered when the context is created or resumed.
+   *
+   * @return the event registry
+   */
+  public SimulationEventRegistry getEventRegistry() {
+    return this.eventRegistry;
+  }
+
+  /**
+   * Gets the delta-encoded snapshots of the topology.
+   *
+   * @return the topology log, null unless
+   *     {@link simblock.settings.SimulationConfiguration#DELTA_GRAPH} is set
+   */
+  public TopologyLog getTopologyLog() {
+    return this.topologyLog;
+  }
+
+  /**
+   * Gets the static output writer.
+   *
+   * @return the static output writer
+   */
+  public PrintWriter getStaticJsonFile() {
+    return this.staticJsonFile;
+  }
+
+  /**
+   * Registers a new block and gets its unique id.
+   *
+   * @param block the block
+   * @return the block id
+   */
+  public int registerBlock(Block block) {
+    return this.blockRegistry.register(block);
+  }
+
+  /**
+   * Gets a block by its id.
+   *
+   * @param blockId the block id
+   * @return the block
+   */
+  public Block getBlock(int blockId) {
+    return this.blockRegistry.getBlock(blockId);
+  }
+
+  /**
+   * Gets the registry of the blocks.
+   *
+   * @return the block registry
+   */
+  public BlockRegistry getBlockRegistry() {
+    return this.blockRegistry;
+  }
+}
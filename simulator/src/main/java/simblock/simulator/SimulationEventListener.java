@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.IOException;
+
+/**
+ * The interface Simulation event listener receives the events of a simulation, the ones written
+ * to output.json, as typed callbacks. Listeners are registered to the
+ * {@link SimulationEventRegistry} of a {@link SimulationContext}; the events are delivered in the
+ * order of the simulation, by one thread at a time. Every callback does nothing by default, so a
+ * listener only implements the events it needs.
+ */
+public interface SimulationEventListener {
+  /**
+   * Called when a node is added to the network.
+   *
+   * @param timestamp the time
+   * @param nodeId    the node id
+   * @param regionId  the region id of the node
+   */
+  default void nodeAdded(long timestamp, int nodeId, int regionId) {
+  }
+
+  /**
+   * Called when a node adds a link to another node.
+   *
+   * @param timestamp   the time
+   * @param beginNodeId the id of the node the link is added to
+   * @param endNodeId   the id of the node at the other end
+   */
+  default void linkAdded(long timestamp, int beginNodeId, int endNodeId) {
+  }
+
+  /**
+   * Called when a node removes a link to another node.
+   *
+   * @param timestamp   the time
+   * @param beginNodeId the id of the node the link is removed from
+   * @param endNodeId   the id of the node at the other end
+   */
+  default void linkRemoved(long timestamp, int beginNodeId, int endNodeId) {
+  }
+
+  /**
+   * Called when a block is added to the chain of a node.
+   *
+   * @param timestamp the time
+   * @param nodeId    the node id
+   * @param blockId   the block id
+   */
+  default void blockAdded(long timestamp, int nodeId, int blockId) {
+  }
+
+  /**
+   * Called when a block is received from another node.
+   *
+   * @param transmissionTimestamp the time the block is sent
+   * @param receptionTimestamp    the time the block is received
+   * @param beginNodeId           the id of the sender
+   * @param endNodeId             the id of the receiver
+   * @param blockId               the block id
+   */
+  default void blockFlow(long transmissionTimestamp, long receptionTimestamp, int beginNodeId,
+                         int endNodeId, int blockId) {
+  }
+
+  /**
+   * Called when the simulation ends, the last event.
+   *
+   * @param timestamp the time
+   */
+  default void simulationEnd(long timestamp) {
+  }
+
+  /**
+   * Writes out the events received so far, so the output can be followed while the simulation
+   * runs. Called at every new block height.
+   *
+   * @throws IOException if the output of the listener cannot be written
+   */
+  default void flush() throws IOException {
+  }
+
+  /**
+   * Releases the resources of the listener, called after the end of the simulation.
+   *
+   * @throws IOException if the output of the listener cannot be written
+   */
+  default void close() throws IOException {
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The type Simulation event registry holds the {@link SimulationEventListener}s of a simulation
+ * and delivers the events raised by the nodes, tasks and routing tables to them, in the order of
+ * registration. The events are delivered through {@link Timer#runOrdered(Runnable)}, so within a
+ * window of the {@link ParallelTimer} they are delivered when the task raising them is committed,
+ * in the order of the tasks. With a timer not deferring them (see {@link Timer#isOrdered()}) they
+ * are delivered directly. Nothing is done for an event when no listener is registered.
+ */
+public class SimulationEventRegistry implements SimulationEventListener {
+  /**
+   * The timer ordering the events.
+   */
+  private final Timer timer;
+
+  private SimulationEventListener[] listeners = new SimulationEventListener[0];
+
+  /**
+   * Instantiates a new Simulation event registry.
+   *
+   * @param timer the timer ordering the events
+   */
+  public SimulationEventRegistry(Timer timer) {
+    this.timer = timer;
+  }
+
+  /**
+   * Registers a listener, receiving the events raised from now on.
+   *
+   * @param listener the listener
+   */
+  public void register(SimulationEventListener listener) {
+    this.listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+    this.listeners[this.listeners.length - 1] = listener;
+  }
+
+  @Override
+  public void nodeAdded(long timestamp, int nodeId, int regionId) {
+    SimulationEventListener[] listeners = this.listeners;
+    if (listeners.length == 0) {
+      return;
+    }
+    if (!this.timer.isOrdered()) {
+      for (SimulationEventListener listener : listeners) {
+        listener.nodeAdded(timestamp, nodeId, regionId);
+      }
+      return;
+    }
+    this.timer.runOrdered(() -> {
+      for (SimulationEventListener listener : listeners) {
+        listener.nodeAdded(timestamp, nodeId, regionId);
+      }
+    });
+  }
+
+  @Override
+  public void linkAdded(long timestamp, int beginNodeId, int endNodeId) {
+    SimulationEventListener[] listeners = this.listeners;
+    if (listeners.length == 0) {
+      return;
+    }
+    if (!this.timer.isOrdered()) {
+      for (SimulationEventListener listener : listeners) {
+        listener.linkAdded(timestamp, beginNodeId, endNodeId);
+      }
+      return;
+    }
+    this.timer.runOrdered(() -> {
+      for (SimulationEventListener listener : listeners) {
+        listener.linkAdded(timestamp, beginNodeId, endNodeId);
+      }
+    });
+  }
+
+  @Override
+  public void linkRemoved(long timestamp, int beginNodeId, int endNodeId) {
+    SimulationEventListener[] listeners = this.listeners;
+    if (listeners.length == 0) {
+      return;
+    }
+    if (!this.timer.isOrdered()) {
+      for (SimulationEventListener listener : listeners) {
+        listener.linkRemoved(timestamp, beginNodeId, endNodeId);
+      }
+      return;
+    }
+    this.timer.runOrdered(() -> {
+      for (SimulationEventListener listener : listeners) {
+        listener.linkRemoved(timestamp, beginNodeId, endNodeId);
+      }
+    });
+  }
+
+  @Override
+  public void blockAdded(long timestamp, int nodeId, int blockId) {
+    SimulationEventListener[] listeners = this.listeners;
+    if (listeners.length == 0) {
+      return;
+    }
+    if (!this.timer.isOrdered()) {
+      for (SimulationEventListener listener : listeners) {
+        listener.blockAdded(timestamp, nodeId, blockId);
+      }
+      return;
+    }
+    this.timer.runOrdered(() -> {
+      for (SimulationEventListener listener : listeners) {
+        listener.blockAdded(timestamp, nodeId, blockId);
+      }
+    });
+  }
+
+  @Override
+  public void blockFlow(long transmissionTimestamp, long receptionTimestamp, int beginNodeId,
+                        int endNodeId, int blockId) {
+    SimulationEventListener[] listeners = this.listeners;
+    if (listeners.length == 0) {
+      return;
+    }
+    if (!this.timer.isOrdered()) {
+      for (SimulationEventListener listener : listeners) {
+        listener.blockFlow(
+            transmissionTimestamp, receptionTimestamp, beginNodeId, endNodeId, blockId);
+      }
+      return;
+    }
+    this.timer.runOrdered(() -> {
+      for (SimulationEventListener listener : listeners) {
+        listener.blockFlow(
+            transmissionTimestamp, receptionTimestamp, beginNodeId, endNodeId, blockId);
+      }
+    });
+  }
+
+  @Override
+  public void simulationEnd(long timestamp) {
+    SimulationEventListener[] listeners = this.listeners;
+    if (listeners.length == 0) {
+      return;
+    }
+    if (!this.timer.isOrdered()) {
+      for (SimulationEventListener listener : listeners) {
+        listener.simulationEnd(timestamp);
+      }
+      return;
+    }
+    this.timer.runOrdered(() -> {
+      for (SimulationEventListener listener : listeners) {
+        listener.simulationEnd(timestamp);
+      }
+    });
+  }
+
+  /**
+   * Flushes all the listeners.
+   *
+   * @throws IOException the first error of the listeners, once all have been flushed
+   */
+  @Override
+  public void flush() throws IOException {
+    IOException error = null;
+    for (SimulationEventListener listener : this.listeners) {
+      try {
+        listener.flush();
+      } catch (IOException e) {
+        if (error == null) {
+          error = e;
+        }
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Closes all the listeners.
+   *
+   * @throws IOException the first error of the listeners, once all have been closed
+   */
+  @Override
+  public void close() throws IOException {
+    IOException error = null;
+    for (SimulationEventListener listener : this.listeners) {
+      try {
+        listener.close();
+      } catch (IOException e) {
+        if (error == null) {
+          error = e;
+        }
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+}
@@ -16,11 +16,13 @@
 
 package simblock.simulator;
 
-import static simblock.simulator.Timer.getCurrentTime;
+import static simblock.settings.SimulationConfiguration.OBSERVATION_WINDOW;
+import static simblock.settings.SimulationConfiguration.PRINT_PROPAGATION;
+import static simblock.settings.SimulationConfiguration.PROPAGATION_STATISTICS;
+import static simblock.settings.SimulationConfiguration.REGION_LATENCY_HISTOGRAMS;
 
+import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import simblock.block.Block;
 import simblock.node.Node;
 
@@ -28,34 +30,85 @@ import simblock.node.Node;
 /**
  * The type Simulator is tasked with maintaining the list of simulated nodes and managing the
  * block interval. It observes and manages the arrival of new blocks at the simulation level.
+ * Every {@link SimulationContext} owns its own simulator.
  */
-public class Simulator {
+public class Simulator implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The timer providing the current simulation time.
+   */
+  private final Timer timer;
 
   /**
    * A list of nodes that will be used in a simulation.
    */
-  private static final ArrayList<Node> simulatedNodes = new ArrayList<>();
+  private final ArrayList<Node> simulatedNodes = new ArrayList<>();
+
+  /**
+   * The simulated nodes indexed by their id, null for the ids of removed nodes.
+   */
+  private final ArrayList<Node> nodesById = new ArrayList<>();
+
+  /**
+   * The online statistics of the block propagation, null if not computed.
+   */
+  private final PropagationStatistics propagationStatistics =
+      PROPAGATION_STATISTICS ? new PropagationStatistics() : null;
+
+  /**
+   * The histograms of the block arrival delays by pair of regions, null if not computed.
+   */
+  private final RegionLatencyHistograms regionLatencyHistograms =
+      REGION_LATENCY_HISTOGRAMS ? new RegionLatencyHistograms() : null;
 
   /**
    * The target block interval in milliseconds.
    */
-  private static long targetInterval;
+  private long targetInterval;
+
+  /**
+   * Instantiates a new Simulator.
+   *
+   * @param timer the timer providing the current simulation time
+   */
+  public Simulator(Timer timer) {
+    this.timer = timer;
+  }
 
   /**
    * Get simulated nodes list.
    *
    * @return the array list
    */
-  public static ArrayList<Node> getSimulatedNodes() {
+  public ArrayList<Node> getSimulatedNodes() {
     return simulatedNodes;
   }
 
+  /**
+   * Gets the online statistics of the block propagation.
+   *
+   * @return the propagation statistics, null if not computed
+   */
+  public PropagationStatistics getPropagationStatistics() {
+    return this.propagationStatistics;
+  }
+
+  /**
+   * Gets the histograms of the block arrival delays by pair of regions.
+   *
+   * @return the region latency histograms, null if not computed
+   */
+  public RegionLatencyHistograms getRegionLatencyHistograms() {
+    return this.regionLatencyHistograms;
+  }
+
   /**
    * Get target block interval.
    *
    * @return the target block interval in milliseconds
    */
-  public static long getTargetInterval() {
+  public long getTargetInterval() {
     return targetInterval;
   }
 
@@ -64,7 +117,7 @@ public class Simulator {
    *
    * @param interval - block interval in milliseconds
    */
-  public static void setTargetInterval(long interval) {
+  public void setTargetInterval(long interval) {
     targetInterval = interval;
   }
 
@@ -73,8 +126,12 @@ public class Simulator {
    *
    * @param node the node
    */
-  public static void addNode(Node node) {
+  public void addNode(Node node) {
     simulatedNodes.add(node);
+    while (nodesById.size() <= node.getNodeID()) {
+      nodesById.add(null);
+    }
+    nodesById.set(node.getNodeID(), node);
   }
 
   /**
@@ -83,8 +140,19 @@ public class Simulator {
    * @param node the node
    */
   @SuppressWarnings("unused")
-  public static void removeNode(Node node) {
+  public void removeNode(Node node) {
     simulatedNodes.remove(node);
+    nodesById.set(node.getNodeID(), null);
+  }
+
+  /**
+   * Gets a simulated node by its id.
+   *
+   * @param nodeId the node id
+   * @return the node or null if no such node is simulated
+   */
+  public Node getNode(int nodeId) {
+    return nodeId < nodesById.size() ? nodesById.get(nodeId) : null;
   }
 
   /**
@@ -95,7 +163,7 @@ public class Simulator {
    * @param node the node
    */
   @SuppressWarnings("unused")
-  public static void addNodeWithConnection(Node node) {
+  public void addNodeWithConnection(Node node) {
     node.joinNetwork();
     addNode(node);
     for (Node existingNode : simulatedNodes) {
@@ -104,19 +172,10 @@ public class Simulator {
   }
 
   /**
-   * A list of observed {@link Block} instances.
+   * The arrivals of the most recently observed blocks at the nodes.
    */
-  private static final ArrayList<Block> observedBlocks = new ArrayList<>();
-
-  /**
-   * A list of observed block propagation times. The map key represents the id of the node that
-   * has seen the
-   * block, the value represents the difference between the current time and the block minting
-   * time, effectively
-   * recording the absolute time it took for a node to witness the block.
-   */
-  private static final ArrayList<LinkedHashMap<Integer, Long>> observedPropagations =
-      new ArrayList<>();
+  private final PropagationTracker propagationTracker =
+      new PropagationTracker(OBSERVATION_WINDOW, PRINT_PROPAGATION);
 
   /**
    * Handle the arrival of a new block. For every observed block, propagation information is
@@ -126,64 +185,37 @@ public class Simulator {
    * @param block the block
    * @param node  the node
    */
-  public static void arriveBlock(Block block, Node node) {
-    // If block is already seen by any node
-    if (observedBlocks.contains(block)) {
-      // Get the propagation information for the current block
-      LinkedHashMap<Integer, Long> propagation = observedPropagations.get(
-          observedBlocks.indexOf(block)
-      );
-      // Update information for the new block
-      propagation.put(node.getNodeID(), getCurrentTime() - block.getTime());
-    } else {
-      // If the block has not been seen by any node and there is no memory allocated
-      //TODO move magic number to constant
-      if (observedBlocks.size() > 10) {
-        // After the observed blocks limit is reached, log and remove old blocks by FIFO principle
-        printPropagation(observedBlocks.get(0), observedPropagations.get(0));
-        observedBlocks.remove(0);
-        observedPropagations.remove(0);
-      }
-      // If the block has not been seen by any node and there is additional memory
-      LinkedHashMap<Integer, Long> propagation = new LinkedHashMap<>();
-      propagation.put(node.getNodeID(), getCurrentTime() - block.getTime());
-      // Record the block as seen
-      observedBlocks.add(block);
-      // Record the propagation time
-      observedPropagations.add(propagation);
+  public void arriveBlock(Block block, Node node) {
+    // The propagation information is shared by all nodes
+    if (!this.timer.isOrdered()) {
+      this.observeBlock(block, node);
+      return;
     }
+    this.timer.runOrdered(() -> this.observeBlock(block, node));
   }
 
   /**
-   * Print propagation information about the propagation of the provided block  in the format:
-   *
-   * <p><em>node_ID, propagation_time</em>
-   *
-   * <p><em>propagation_time</em>: The time from when the block of the block ID is generated to
-   * when the
-   * node of the <em>node_ID</em> is reached.
+   * Records the arrival of the block at the node at the current time.
    *
-   * @param block       the block
-   * @param propagation the propagation of the provided block as a list of {@link Node} IDs and
-   *                    propagation times
-   */
-  public static void printPropagation(Block block, LinkedHashMap<Integer, Long> propagation) {
-    // Print block and its height
-    //TODO block does not have a toString method, what is printed here
-    System.out.println(block + ":" + block.getHeight());
-    for (Map.Entry<Integer, Long> timeEntry : propagation.entrySet()) {
-      System.out.println(timeEntry.getKey() + "," + timeEntry.getValue());
+   * @param block the block
+   * @param node  the node
+   */
+  private void observeBlock(Block block, Node node) {
+    if (this.propagationStatistics != null) {
+      this.propagationStatistics.observe(
+          block, node, this.timer.getCurrentTime(), this.simulatedNodes.size());
     }
-    System.out.println();
+    if (this.regionLatencyHistograms != null) {
+      this.regionLatencyHistograms.observe(block, node, this.timer.getCurrentTime());
+    }
+    this.propagationTracker.observe(block, node.getNodeID(), this.timer.getCurrentTime());
   }
 
   /**
-   * Print propagation information about all blocks, internally relying on
-   * {@link Simulator#printPropagation(Block, LinkedHashMap)}.
+   * Print propagation information about all observed blocks and the summary of the run, see
+   * {@link PropagationTracker#printAll()}.
    */
-  public static void printAllPropagation() {
-    for (int i = 0; i < observedBlocks.size(); i++) {
-      printPropagation(observedBlocks.get(i), observedPropagations.get(i));
-    }
+  public void printAllPropagation() {
+    this.propagationTracker.printAll();
   }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import static simblock.settings.SimulationConfiguration.SEED;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import simblock.task.MessageTaskPool;
+
+/**
+ * The type Task pool benchmark compares the simulation with the
+ * {@link simblock.settings.SimulationConfiguration#TASK_POOLING} off and on, running the same
+ * simulation in both modes in a temporary output directory, with the standard output discarded.
+ *
+ * <p>The arguments are the number of rounds, 3 by default, the first ones warming up the JVM, and
+ * the seed, the {@link simblock.settings.SimulationConfiguration#SEED} by default. The memory
+ * allocated by the simulation thread and the reuse of the message tasks are printed for each run
+ * in the format:
+ *
+ * <p><em>round: pooling: on|off, simulation time: ms, allocated bytes: bytes, allocation rate:
+ * MB/s, created message tasks: count, recycled message tasks: count</em>
+ */
+public class TaskPoolBenchmark {
+  /**
+   * The entry point.
+   *
+   * @param args the number of rounds and the seed
+   * @throws IOException if the output files cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+    long seed = args.length > 1 ? Long.parseLong(args[1]) : SEED;
+    if (getAllocatedBytes() < 0) {
+      System.err.println("The allocated bytes are not supported by this JVM");
+    }
+
+    PrintStream out = System.out;
+    for (int round = 1; round <= rounds; round++) {
+      for (boolean taskPooling : new boolean[] {false, true}) {
+        File outDir = Files.createTempDirectory("simblock").toFile();
+        new File(outDir, "graph").mkdirs();
+        SimulationContext context = new SimulationContext(seed, outDir.toURI(), taskPooling);
+
+        System.setOut(new PrintStream(new OutputStream() {
+          @Override
+          public void write(int b) {
+          }
+        }));
+        long start = System.currentTimeMillis();
+        long startAllocatedBytes = getAllocatedBytes();
+        try {
+          Main.run(context);
+        } finally {
+          System.setOut(out);
+        }
+        long allocatedBytes = getAllocatedBytes() - startAllocatedBytes;
+        long simulationTime = Math.max(System.currentTimeMillis() - start, 1);
+        delete(outDir);
+
+        MessageTaskPool messageTaskPool = context.getMessageTaskPool();
+        out.println(round + ": pooling: " + (taskPooling ? "on" : "off")
+            + ", simulation time: " + simulationTime + " ms, allocated bytes: " + allocatedBytes
+            + ", allocation rate: " + allocatedBytes * 1000 / simulationTime / (1024 * 1024)
+            + " MB/s, created message tasks: " + messageTaskPool.getCreatedCount()
+            + ", recycled message tasks: " + messageTaskPool.getRecycledCount());
+      }
+    }
+  }
+
+  /**
+   * Gets the number of bytes allocated on the heap by the current thread, when supported by the
+   * JVM.
+   *
+   * @return the allocated bytes or -1 if not supported
+   */
+  private static long getAllocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  /**
+   * Deletes a directory and its content.
+   *
+   * @param dir the directory
+   * @throws IOException if a file cannot be deleted
+   */
+  private static void delete(File dir) throws IOException {
+    try (Stream<File> files = Files.walk(dir.toPath()).map(path -> path.toFile())) {
+      files.sorted(Comparator.reverseOrder()).forEach(File::delete);
+    }
+  }
+}
@@ -16,23 +16,43 @@
 
 package simblock.simulator;
 
+import static simblock.settings.SimulationConfiguration.FUTURE_EVENT_LIST;
+import static simblock.settings.SimulationConfiguration.TASK_POOLING;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.PriorityQueue;
 import simblock.task.Task;
 
 
 /**
  * The type Timer schedules the execution of simulation tasks stored in a Future Event List (FEL)
  * . Each {@link Task}
- * can be scheduled for execution. Tasks that have been run get removed from the FEL.
+ * can be scheduled for execution. Tasks that have been run get removed from the FEL. Every
+ * {@link SimulationContext} owns its own timer.
+ *
+ * <p>The timer runs the tasks one after the other on the calling thread. See
+ * {@link ParallelTimer} for running the tasks of different nodes in parallel.
+ *
+ * <p>The pending message tasks can be kept in an {@link EventStore} of primitive rows instead of
+ * the FEL. The two are merged by time and sequence number, in the same order as a single FEL.
  */
-public class Timer {
+public class Timer implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The minimum number of cancelled tasks before the task queue is compacted.
+   */
+  private static final int MIN_COMPACTION_COUNT = 1024;
 
   /**
    * A sorted queue of scheduled tasks.
    */
-  private static final PriorityQueue<ScheduledTask> taskQueue = new PriorityQueue<>();
+  private final FutureEventList taskQueue = createFutureEventList(FUTURE_EVENT_LIST);
 
   /**
    * A map containing a mapping of all tasks to their ScheduledTask counterparts. When
@@ -40,95 +60,291 @@ public class Timer {
    * pair is to be removed from the mapping.
    */
   //TODO a bit redundant since Task is again stored in ScheduledTask. Is there a better approach?
-  private static final Map<Task, ScheduledTask> taskMap = new HashMap<>();
+  private final Map<Task, ScheduledTask> taskMap = new HashMap<>();
   /**
    * Initial simulation time in milliseconds.
    */
   //TODO is it milliseconds?
-  private static long currentTime = 0L;
-
-  /**
-   * Represents a {@link Task} that is scheduled to be executed.
-   */
-  private static class ScheduledTask implements Comparable<ScheduledTask> {
-    private final Task task;
-    private final long scheduledTime;
-
-    /**
-     * Instantiates a new ScheduledTask.
-     *
-     * @param task          - the task to be executed
-     * @param scheduledTime - the simulation time at which the task is to be executed
-     */
-    private ScheduledTask(Task task, long scheduledTime) {
-      this.task = task;
-      this.scheduledTime = scheduledTime;
-    }
-
-    /**
-     * Gets the task.
-     *
-     * @return the {@link Task} instance
-     */
-    private Task getTask() {
-      return this.task;
-    }
-
-    /**
-     * Gets the scheduled time at which the task is to be executed.
-     *
-     * @return the scheduled time
-     */
-    private long getScheduledTime() {
-      return this.scheduledTime;
-    }
-
-    /**
-     * Compares the two scheduled tasks.
-     *
-     * @param o other task
-     * @return 1 if self is executed later, 0 if concurrent and -1 if self is to be executed before.
-     */
-    public int compareTo(ScheduledTask o) {
-      if (this.equals(o)) {
-        return 0;
-      }
-      int order = Long.signum(this.scheduledTime - o.scheduledTime);
-      if (order != 0) {
-        return order;
-      }
-      order = System.identityHashCode(this) - System.identityHashCode(o);
-      return order;
+  private long currentTime = 0L;
+
+  /**
+   * The number of tasks that have been run.
+   */
+  private long processedTaskCount = 0L;
+
+  /**
+   * The sequence number assigned to the next scheduled task.
+   */
+  private long nextSequence = 0L;
+
+  /**
+   * The number of cancelled tasks still stored in the task queue.
+   */
+  private int cancelledTaskCount = 0;
+
+  /**
+   * The tasks scheduled for the current time, pulled from the task queue by
+   * {@link #nextBatch()} in insertion order.
+   */
+  private transient ArrayList<ScheduledTask> batch = new ArrayList<>();
+
+  /**
+   * The index of the next task in the batch to be run.
+   */
+  private int batchIndex = 0;
+
+  /**
+   * The scheduled tasks that have been run or cancelled, reused by
+   * {@link #newScheduledTask(Task, long)}.
+   */
+  private transient ArrayDeque<ScheduledTask> scheduledTaskPool = new ArrayDeque<>();
+
+  /**
+   * The store of the pending message tasks, null if all tasks are kept in the task queue.
+   */
+  private final EventStore eventStore;
+
+  /**
+   * Whether the scheduled tasks that have been run or cancelled are reused.
+   */
+  private final boolean taskPooling;
+
+  /**
+   * Instantiates a new Timer keeping all tasks in the future event list.
+   */
+  public Timer() {
+    this(null);
+  }
+
+  /**
+   * Instantiates a new Timer keeping the pending message tasks in the provided event store.
+   *
+   * @param eventStore the event store, null to keep all tasks in the future event list
+   */
+  public Timer(EventStore eventStore) {
+    this(eventStore, TASK_POOLING);
+  }
+
+  /**
+   * Instantiates a new Timer keeping the pending message tasks in the provided event store and
+   * reusing the scheduled tasks if requested.
+   *
+   * @param eventStore  the event store, null to keep all tasks in the future event list
+   * @param taskPooling whether the scheduled tasks are reused, see
+   *                    {@link simblock.settings.SimulationConfiguration#TASK_POOLING}
+   */
+  public Timer(EventStore eventStore, boolean taskPooling) {
+    this.eventStore = eventStore;
+    this.taskPooling = taskPooling;
+  }
+
+  /**
+   * Reads a timer written by a {@link Checkpoint} between two batches, starting with an empty
+   * batch and pool.
+   *
+   * @param in the input stream
+   * @throws IOException            if the timer cannot be read
+   * @throws ClassNotFoundException if a class of the timer cannot be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    this.batch = new ArrayList<>();
+    this.batchIndex = 0;
+    this.scheduledTaskPool = new ArrayDeque<>();
+  }
+
+  /**
+   * Instantiates the future event list implementation.
+   *
+   * @param futureEventListName the future event list class name
+   * @return the future event list
+   */
+  static FutureEventList createFutureEventList(String futureEventListName) {
+    try {
+      return (FutureEventList) Class.forName(futureEventListName).getConstructor().newInstance();
+    } catch (Exception e) {
+      throw new IllegalArgumentException(
+          "Unable to instantiate future event list " + futureEventListName, e);
     }
   }
 
+  /**
+   * Gets the next {@link ScheduledTask} that has not been cancelled, discarding cancelled tasks
+   * on the way.
+   *
+   * @return the next scheduled task or null if task queue is empty
+   */
+  ScheduledTask peekScheduledTask() {
+    ScheduledTask scheduledTask = taskQueue.peek();
+    while (scheduledTask != null && scheduledTask.isCancelled()) {
+      recycle(taskQueue.poll());
+      cancelledTaskCount--;
+      scheduledTask = taskQueue.peek();
+    }
+    return scheduledTask;
+  }
+
+  /**
+   * Gets the next row of the event store if it is to be run before the provided scheduled task.
+   *
+   * @param scheduledTask the next scheduled task of the task queue, may be null
+   * @return the row index or -1 if the scheduled task is to be run first
+   */
+  private int peekStoredRow(ScheduledTask scheduledTask) {
+    int row = eventStore == null ? -1 : eventStore.peek();
+    if (row < 0 || scheduledTask == null) {
+      return row;
+    }
+    long time = eventStore.getTime(row);
+    if (time < scheduledTask.getScheduledTime() || time == scheduledTask.getScheduledTime()
+        && eventStore.getSequence(row) < scheduledTask.getSequence()) {
+      return row;
+    }
+    return -1;
+  }
+
+  /**
+   * Removes the next {@link ScheduledTask} to be run from the task queue or the event store,
+   * decoding the rows of the event store into scheduled tasks.
+   *
+   * @return the next scheduled task or null if there are no tasks
+   */
+  private ScheduledTask pollScheduledTask() {
+    ScheduledTask scheduledTask = peekScheduledTask();
+    int row = peekStoredRow(scheduledTask);
+    if (row < 0) {
+      return scheduledTask == null ? null : taskQueue.poll();
+    }
+    long time = eventStore.getTime(row);
+    long sequence = eventStore.getSequence(row);
+    Task task = eventStore.poll();
+    scheduledTask = scheduledTaskPool.poll();
+    if (scheduledTask == null) {
+      return new ScheduledTask(task, time, sequence);
+    }
+    scheduledTask.reset(task, time, sequence);
+    return scheduledTask;
+  }
+
+  /**
+   * Gets the time of the next task to be run.
+   *
+   * @return the time in milliseconds or -1 if there are no tasks
+   */
+  private long peekTime() {
+    ScheduledTask scheduledTask = peekScheduledTask();
+    int row = peekStoredRow(scheduledTask);
+    if (row >= 0) {
+      return eventStore.getTime(row);
+    }
+    return scheduledTask == null ? -1 : scheduledTask.getScheduledTime();
+  }
+
   /**
    * Runs a {@link ScheduledTask}.
    */
-  public static void runTask() {
-    // If there are any tasks
-    if (taskQueue.size() > 0) {
-      // Get the next ScheduledTask
-      ScheduledTask currentScheduledTask = taskQueue.poll();
+  public void runTask() {
+    // Get the next ScheduledTask, if there are any tasks
+    ScheduledTask currentScheduledTask = pollScheduledTask();
+    if (currentScheduledTask != null) {
       Task currentTask = currentScheduledTask.getTask();
       currentTime = currentScheduledTask.getScheduledTime();
       // Remove the task from the mapping of all tasks
       taskMap.remove(currentTask, currentScheduledTask);
+      processedTaskCount++;
       // Execute
       currentTask.run();
+      currentTask.release();
+      recycle(currentScheduledTask);
     }
   }
 
   /**
-   * Remove task from the mapping of all tasks and from the execution queue.
+   * Pulls every task scheduled for the earliest pending time from the execution queue in one
+   * pass. The tasks of the batch are then inspected by {@link #getBatchTask()} and executed by
+   * {@link #runBatchTask()} in insertion order. Tasks scheduled for the same time while the batch
+   * is being run are pulled by the next batch.
+   *
+   * @return false if task queue is empty
+   */
+  public boolean nextBatch() {
+    return pullBatch(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Pulls at most the provided number of tasks scheduled for the earliest pending time from the
+   * execution queue.
+   *
+   * @param maxSize the maximum number of tasks in the batch
+   * @return false if task queue is empty
+   */
+  boolean pullBatch(int maxSize) {
+    batch.clear();
+    batchIndex = 0;
+    long batchTime = peekTime();
+    if (batchTime < 0) {
+      return false;
+    }
+    while (batch.size() < maxSize && peekTime() == batchTime) {
+      batch.add(pollScheduledTask());
+    }
+    return true;
+  }
+
+  /**
+   * Get the {@link Task} of the current batch to be executed next, skipping tasks that have been
+   * cancelled since the batch was pulled.
+   *
+   * @return the task or null if the batch has been exhausted.
+   */
+  public Task getBatchTask() {
+    while (batchIndex < batch.size()) {
+      ScheduledTask scheduledTask = batch.get(batchIndex);
+      if (!scheduledTask.isCancelled()) {
+        return scheduledTask.getTask();
+      }
+      batchIndex++;
+      cancelledTaskCount--;
+      recycle(scheduledTask);
+    }
+    return null;
+  }
+
+  /**
+   * Runs the {@link Task} returned by {@link #getBatchTask()}.
+   */
+  public void runBatchTask() {
+    if (getBatchTask() != null) {
+      ScheduledTask currentScheduledTask = batch.get(batchIndex++);
+      Task currentTask = currentScheduledTask.getTask();
+      currentTime = currentScheduledTask.getScheduledTime();
+      // Remove the task from the mapping of all tasks
+      taskMap.remove(currentTask, currentScheduledTask);
+      processedTaskCount++;
+      // Execute
+      currentTask.run();
+      currentTask.release();
+      recycle(currentScheduledTask);
+    }
+  }
+
+  /**
+   * Remove task from the mapping of all tasks and from the execution queue. The task is only
+   * marked as cancelled in O(1) and skipped when it reaches the head of the queue. The queue is
+   * compacted once more than half of it consists of cancelled tasks. Message tasks kept in the
+   * event store cannot be removed.
    *
    * @param task the task to be removed
    */
-  public static void removeTask(Task task) {
-    if (taskMap.containsKey(task)) {
-      ScheduledTask scheduledTask = taskMap.get(task);
-      taskQueue.remove(scheduledTask);
-      taskMap.remove(task, scheduledTask);
+  public void removeTask(Task task) {
+    ScheduledTask scheduledTask = taskMap.remove(task);
+    if (scheduledTask != null) {
+      scheduledTask.cancel();
+      cancelledTaskCount++;
+      if (cancelledTaskCount >= MIN_COMPACTION_COUNT
+          && cancelledTaskCount * 2 > taskQueue.size()) {
+        cancelledTaskCount -= taskQueue.removeCancelled();
+      }
     }
   }
 
@@ -137,9 +353,14 @@ public class Timer {
    *
    * @return the task from the queue or null if task queue is empty.
    */
-  public static Task getTask() {
-    if (taskQueue.size() > 0) {
-      ScheduledTask currentTask = taskQueue.peek();
+  public Task getTask() {
+    ScheduledTask currentTask = peekScheduledTask();
+    int row = peekStoredRow(currentTask);
+    if (row >= 0) {
+      // A copy of the message task, the row stays in the event store
+      return eventStore.getTask(row);
+    }
+    if (currentTask != null) {
       return currentTask.getTask();
     } else {
       return null;
@@ -151,10 +372,8 @@ public class Timer {
    *
    * @param task the task
    */
-  public static void putTask(Task task) {
-    ScheduledTask scheduledTask = new ScheduledTask(task, currentTime + task.getInterval());
-    taskMap.put(task, scheduledTask);
-    taskQueue.add(scheduledTask);
+  public void putTask(Task task) {
+    schedule(task, getCurrentTime() + task.getInterval());
   }
 
   /**
@@ -164,18 +383,122 @@ public class Timer {
    * @param time the time in milliseconds
    */
   @SuppressWarnings("unused")
-  public static void putTaskAbsoluteTime(Task task, long time) {
-    ScheduledTask scheduledTask = new ScheduledTask(task, time);
+  public void putTaskAbsoluteTime(Task task, long time) {
+    schedule(task, time);
+  }
+
+  /**
+   * Adds the task to the execution queue.
+   *
+   * @param task the task
+   * @param time the time in milliseconds
+   */
+  void schedule(Task task, long time) {
+    if (eventStore != null && eventStore.accepts(task)) {
+      eventStore.add(task, time, nextSequence());
+      return;
+    }
+    ScheduledTask scheduledTask = newScheduledTask(task, time);
     taskMap.put(task, scheduledTask);
     taskQueue.add(scheduledTask);
   }
 
+  /**
+   * Creates a scheduled task with the next sequence number.
+   *
+   * @param task the task
+   * @param time the time in milliseconds
+   * @return the scheduled task
+   */
+  ScheduledTask newScheduledTask(Task task, long time) {
+    ScheduledTask scheduledTask = scheduledTaskPool.poll();
+    if (scheduledTask == null) {
+      return new ScheduledTask(task, time, nextSequence());
+    }
+    scheduledTask.reset(task, time, nextSequence());
+    return scheduledTask;
+  }
+
+  /**
+   * Keeps a scheduled task that has been run or cancelled for reuse, if the tasks are pooled.
+   *
+   * @param scheduledTask the scheduled task
+   */
+  void recycle(ScheduledTask scheduledTask) {
+    if (this.taskPooling) {
+      scheduledTaskPool.push(scheduledTask);
+    }
+  }
+
+  /**
+   * Gets the next sequence number.
+   *
+   * @return the sequence number
+   */
+  long nextSequence() {
+    return nextSequence++;
+  }
+
   /**
    * Get current time in milliseconds.
    *
    * @return the time
    */
-  public static long getCurrentTime() {
+  public long getCurrentTime() {
     return currentTime;
   }
+
+  /**
+   * Sets the current time in milliseconds.
+   *
+   * @param currentTime the time
+   */
+  void setCurrentTime(long currentTime) {
+    this.currentTime = currentTime;
+  }
+
+  /**
+   * Runs an action changing the state shared by all nodes, such as the propagation records of
+   * the {@link Simulator}, in the order of the tasks. The action is run immediately.
+   *
+   * @param action the action
+   */
+  public void runOrdered(Runnable action) {
+    action.run();
+  }
+
+  /**
+   * Whether the actions passed to {@link #runOrdered(Runnable)} may be deferred to keep the order
+   * of the tasks. If not, they can be run directly instead.
+   *
+   * @return false, the actions are run immediately
+   */
+  public boolean isOrdered() {
+    return false;
+  }
+
+  /**
+   * Releases the resources held by the timer once the simulation has ended.
+   */
+  public void close() {
+  }
+
+  /**
+   * Gets the number of tasks that have been run.
+   *
+   * @return the processed task count
+   */
+  public long getProcessedTaskCount() {
+    return processedTaskCount;
+  }
+
+  /**
+   * Gets the number of task runs that have been undone by rollbacks, always 0 but for the
+   * optimistic {@link ParallelTimer}.
+   *
+   * @return the rolled back task count
+   */
+  public long getRolledBackTaskCount() {
+    return 0L;
+  }
 }
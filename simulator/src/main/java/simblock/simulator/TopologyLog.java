@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import simblock.node.Node;
+
+/**
+ * The type Topology log writes the snapshots of the network topology as one full base graph
+ * followed by the links added and removed between two snapshots, instead of the full edge list at
+ * every snapshot. The changes are collected from the add-link and remove-link events, so taking a
+ * snapshot does not walk the nodes once the base graph is written.
+ *
+ * <p>The file is made of sections, each starting with a line <em>base height</em> or
+ * <em>delta height</em>. The lines of the base section are the edges <em>node_ID neighbor_ID</em>
+ * as in the graph/height.txt files. The lines of a delta section are <em>+ node_ID
+ * neighbor_ID</em> for an edge added and <em>- node_ID neighbor_ID</em> for an edge removed since
+ * the previous snapshot, once per occurrence as a node may have a neighbor both as outbound and
+ * inbound. {@link TopologyReader} reconstructs the snapshot at any height.
+ */
+public class TopologyLog implements SimulationEventListener {
+  private final PrintWriter writer;
+
+  /**
+   * Whether the base graph has been written, the changes are collected from then on.
+   */
+  private boolean hasBase = false;
+
+  /**
+   * The net change of the number of occurrences of each edge since the last snapshot, by key.
+   */
+  private final HashMap<Long, Integer> changes = new HashMap<>();
+
+  /**
+   * Instantiates a new Topology log.
+   *
+   * @param writer the writer of the log
+   */
+  public TopologyLog(Writer writer) {
+    this.writer = new PrintWriter(writer);
+  }
+
+  /**
+   * Gets the key of an edge.
+   *
+   * @param nodeId     the id of the node
+   * @param neighborId the id of the neighbor
+   * @return the key
+   */
+  static long getKey(int nodeId, int neighborId) {
+    return (long) nodeId << 32 | neighborId & 0xFFFFFFFFL;
+  }
+
+  @Override
+  public void linkAdded(long timestamp, int beginNodeId, int endNodeId) {
+    if (this.hasBase) {
+      this.changes.merge(getKey(beginNodeId, endNodeId), 1, Integer::sum);
+    }
+  }
+
+  @Override
+  public void linkRemoved(long timestamp, int beginNodeId, int endNodeId) {
+    if (this.hasBase) {
+      this.changes.merge(getKey(beginNodeId, endNodeId), -1, Integer::sum);
+    }
+  }
+
+  /**
+   * Writes the snapshot of the topology at a block height, the full graph for the first
+   * snapshot and the changes since the previous one afterwards.
+   *
+   * @param blockHeight the block height
+   * @param simulator   the simulator holding the nodes
+   */
+  public void snapshot(int blockHeight, Simulator simulator) {
+    if (!this.hasBase) {
+      this.writer.println("base " + blockHeight);
+      for (Node node : simulator.getSimulatedNodes()) {
+        for (Node neighbor : node.getNeighbors()) {
+          this.writer.println(node.getNodeID() + " " + neighbor.getNodeID());
+        }
+      }
+      this.hasBase = true;
+    } else {
+      this.writer.println("delta " + blockHeight);
+      long[] keys = new long[this.changes.size()];
+      int count = 0;
+      for (Map.Entry<Long, Integer> change : this.changes.entrySet()) {
+        if (change.getValue() != 0) {
+          keys[count++] = change.getKey();
+        }
+      }
+      Arrays.sort(keys, 0, count);
+      for (int i = 0; i < count; i++) {
+        int occurrences = this.changes.get(keys[i]);
+        String edge = (keys[i] >> 32) + " " + (int) keys[i];
+        for (int j = 0; j < Math.abs(occurrences); j++) {
+          this.writer.println((occurrences > 0 ? "+ " : "- ") + edge);
+        }
+      }
+    }
+    this.changes.clear();
+    this.writer.flush();
+  }
+
+  @Override
+  public void close() {
+    this.writer.close();
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.simulator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The type Topology reader reconstructs a snapshot of the network topology from a
+ * {@link TopologyLog}, applying the changes following the base graph up to the requested block
+ * height. The snapshot is written in the format of the graph/height.txt files, the edges sorted
+ * by node id and neighbor id. Files ending with .gz are decompressed.
+ *
+ * <p>Usage: {@code TopologyReader <topology.txt> <height> <height.txt>}
+ */
+public final class TopologyReader {
+  private TopologyReader() {
+  }
+
+  /**
+   * The entry point.
+   *
+   * @param args the topology log, the block height of the snapshot and the file to write
+   * @throws IOException if a file cannot be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 3) {
+      System.err.println("Usage: TopologyReader <topology.txt> <height> <height.txt>");
+      System.exit(1);
+    }
+    TreeMap<Long, Integer> edges = read(new File(args[0]), Integer.parseInt(args[1]));
+    try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(args[2])))) {
+      for (Map.Entry<Long, Integer> edge : edges.entrySet()) {
+        String line = (edge.getKey() >> 32) + " " + edge.getKey().intValue();
+        for (int i = 0; i < edge.getValue(); i++) {
+          out.println(line);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the snapshot of the topology at a block height.
+   *
+   * @param file        the topology log
+   * @param blockHeight the block height of a snapshot
+   * @return the number of occurrences of each edge by key, see {@link TopologyLog#getKey(int,
+   *     int)}
+   * @throws IOException if the file cannot be read or has no snapshot at the block height
+   */
+  public static TreeMap<Long, Integer> read(File file, int blockHeight) throws IOException {
+    InputStream in = new FileInputStream(file);
+    if (file.getName().endsWith(".gz")) {
+      in = new GZIPInputStream(in, 1 << 16);
+    }
+    TreeMap<Long, Integer> edges = new TreeMap<>();
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+      boolean found = false;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("base ") || line.startsWith("delta ")) {
+          if (found) {
+            return edges;
+          }
+          found = Integer.parseInt(line.substring(line.indexOf(' ') + 1)) == blockHeight;
+          continue;
+        }
+        String[] fields = line.split(" ");
+        if (fields.length == 2) {
+          edges.merge(getKey(fields[0], fields[1]), 1, Integer::sum);
+        } else if (fields[0].equals("+")) {
+          edges.merge(getKey(fields[1], fields[2]), 1, Integer::sum);
+        } else {
+          // Removes the edge once no occurrence is left
+          edges.merge(getKey(fields[1], fields[2]), -1, (a, b) -> a + b == 0 ? null : a + b);
+        }
+      }
+      if (!found) {
+        throw new IOException("No snapshot at height " + blockHeight + " in " + file);
+      }
+    }
+    return edges;
+  }
+
+  private static long getKey(String nodeId, String neighborId) {
+    return TopologyLog.getKey(Integer.parseInt(nodeId), Integer.parseInt(neighborId));
+  }
+}
@@ -19,19 +19,22 @@ package simblock.task;
 import static simblock.simulator.Network.getLatency;
 
 import simblock.node.Node;
+import simblock.simulator.SimulationContext;
 
 /**
  * The type Abstract message task.
  */
 public abstract class AbstractMessageTask implements Task {
+  private static final long serialVersionUID = 1L;
+
   /**
    * The sending entity.
    */
-  private final Node from;
+  private Node from;
   /**
    * The receiving entity.
    */
-  private final Node to;
+  private Node to;
 
   /**
    * Instantiates a new Abstract message task.
@@ -44,6 +47,23 @@ public abstract class AbstractMessageTask implements Task {
     this.to = to;
   }
 
+  /**
+   * Instantiates a new Abstract message task, to be reset before it is used.
+   */
+  AbstractMessageTask() {
+  }
+
+  /**
+   * Reuses the message task for another pair of nodes.
+   *
+   * @param from the sending entity
+   * @param to   the receiving entity
+   */
+  void reset(Node from, Node to) {
+    this.from = from;
+    this.to = to;
+  }
+
   /**
    * Get the sending node.
    *
@@ -62,18 +82,37 @@ public abstract class AbstractMessageTask implements Task {
     return this.to;
   }
 
+  /**
+   * Gets the context of the simulation the task belongs to.
+   *
+   * @return the simulation context
+   */
+  protected SimulationContext getContext() {
+    return this.from.getContext();
+  }
+
   /**
    * Get the message delay with regards to respective regions.
    *
    * @return the message sending interval
    */
   public long getInterval() {
-    long latency = getLatency(this.from.getRegion(), this.to.getRegion());
+    long latency = getLatency(this.from.getRegion(), this.to.getRegion(), this.from.getRandom());
     // Add 10 milliseconds here, why?
     //TODO
     return latency + 10;
   }
 
+  /**
+   * Gets the node the message is received by.
+   *
+   * @return the <em>to</em> node
+   */
+  @Override
+  public Node getNode() {
+    return this.to;
+  }
+
   /**
    * Receive message at the <em>to</em> side.
    */
@@ -81,4 +120,12 @@ public abstract class AbstractMessageTask implements Task {
     this.to.receiveMessage(this);
   }
 
+  /**
+   * Returns the message task to the {@link MessageTaskPool} of the simulation once received.
+   */
+  @Override
+  public void release() {
+    getContext().getMessageTaskPool().release(this);
+  }
+
 }
\ No newline at end of file
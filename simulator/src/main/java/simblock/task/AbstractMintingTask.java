@@ -18,11 +18,14 @@ package simblock.task;
 
 import simblock.block.Block;
 import simblock.node.Node;
+import simblock.simulator.SimulationContext;
 
 /**
  * The type Abstract minting task represents .
  */
 public abstract class AbstractMintingTask implements Task {
+  private static final long serialVersionUID = 1L;
+
   /**
    * The node to mint the block.
    */
@@ -58,6 +61,15 @@ public abstract class AbstractMintingTask implements Task {
     return minter;
   }
 
+  /**
+   * Gets the context of the simulation the task belongs to.
+   *
+   * @return the simulation context
+   */
+  protected SimulationContext getContext() {
+    return this.minter.getContext();
+  }
+
   /**
    * Gets the minted blocks parent.
    *
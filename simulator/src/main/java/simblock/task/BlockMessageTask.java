@@ -16,9 +16,7 @@
 
 package simblock.task;
 
-import static simblock.simulator.Main.OUT_JSON_FILE;
 import static simblock.simulator.Network.getLatency;
-import static simblock.simulator.Timer.getCurrentTime;
 
 import simblock.block.Block;
 import simblock.node.Node;
@@ -28,15 +26,17 @@ import simblock.node.Node;
  */
 // Bitcoin protocol Wiki: https://en.bitcoin.it/wiki/Protocol_documentation#block
 public class BlockMessageTask extends AbstractMessageTask {
+  private static final long serialVersionUID = 1L;
+
   /**
    * The {@link Block} that is sent.
    */
-  private final Block block;
+  private Block block;
 
   /**
    * The block message sending delay in milliseconds.
    */
-  private final long interval;
+  private long interval;
 
   /**
    * Instantiates a new Block message task.
@@ -49,7 +49,43 @@ public class BlockMessageTask extends AbstractMessageTask {
   public BlockMessageTask(Node from, Node to, Block block, long delay) {
     super(from, to);
     this.block = block;
-    this.interval = getLatency(this.getFrom().getRegion(), this.getTo().getRegion()) + delay;
+    this.interval = getLatency(
+        this.getFrom().getRegion(), this.getTo().getRegion(), this.getFrom().getRandom()) + delay;
+  }
+
+  /**
+   * Instantiates a new Block message task, to be reset before it is used.
+   */
+  BlockMessageTask() {
+  }
+
+  /**
+   * Reuses the message task.
+   *
+   * @param from  the sender
+   * @param to    the receiver
+   * @param block the block instance
+   * @param delay the delay of the message transmission
+   */
+  void reset(Node from, Node to, Block block, long delay) {
+    reset(from, to);
+    this.block = block;
+    this.interval = getLatency(
+        this.getFrom().getRegion(), this.getTo().getRegion(), this.getFrom().getRandom()) + delay;
+  }
+
+  /**
+   * Reuses the message task with an interval drawn before.
+   *
+   * @param from     the sender
+   * @param to       the receiver
+   * @param block    the block instance
+   * @param interval the message sending interval
+   */
+  void resetWithInterval(Node from, Node to, Block block, long interval) {
+    reset(from, to);
+    this.block = block;
+    this.interval = interval;
   }
 
 
@@ -63,20 +99,9 @@ public class BlockMessageTask extends AbstractMessageTask {
    */
   @Override
   public void run() {
-
-    this.getFrom().sendNextBlockMessage();
-
-    OUT_JSON_FILE.print("{");
-    OUT_JSON_FILE.print("\"kind\":\"flow-block\",");
-    OUT_JSON_FILE.print("\"content\":{");
-    OUT_JSON_FILE.print("\"transmission-timestamp\":" + (getCurrentTime() - this.interval) + ",");
-    OUT_JSON_FILE.print("\"reception-timestamp\":" + getCurrentTime() + ",");
-    OUT_JSON_FILE.print("\"begin-node-id\":" + getFrom().getNodeID() + ",");
-    OUT_JSON_FILE.print("\"end-node-id\":" + getTo().getNodeID() + ",");
-    OUT_JSON_FILE.print("\"block-id\":" + block.getId());
-    OUT_JSON_FILE.print("}");
-    OUT_JSON_FILE.print("},");
-    OUT_JSON_FILE.flush();
+    long currentTime = getContext().getTimer().getCurrentTime();
+    getContext().getEventRegistry().blockFlow(currentTime - this.interval, currentTime,
+        getFrom().getNodeID(), getTo().getNodeID(), block.getId());
 
     super.run();
   }
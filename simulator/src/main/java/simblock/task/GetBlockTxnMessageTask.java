@@ -24,6 +24,8 @@ import simblock.node.Node;
  */
 // Compact block relay protocol Wiki: https://github.com/bitcoin/bips/blob/master/bip-0152.mediawiki
 public class GetBlockTxnMessageTask extends AbstractMessageTask {
+  private static final long serialVersionUID = 1L;
+
 	/**
      * The {@link Block} that is sent by from as compact block.
      */
@@ -33,6 +35,18 @@ public class GetBlockTxnMessageTask extends AbstractMessageTask {
 		super(from, to);
 		this.block = block;
 	}
+
+	/**
+	 * Reuses the message task.
+	 *
+	 * @param from  the sender
+	 * @param to    the receiver
+	 * @param block the block sent as compact block
+	 */
+	void reset(Node from, Node to, Block block) {
+		reset(from, to);
+		this.block = block;
+	}
     
     /**
      * Get block.
@@ -41,5 +55,13 @@ public class GetBlockTxnMessageTask extends AbstractMessageTask {
      */
 	public Block getBlock(){
 		return this.block;
-	}	
+	}
+
+	/**
+	 * The request is kept in the message queue of the receiving node once received, which releases
+	 * it after sending the block.
+	 */
+	@Override
+	public void release() {
+	}
 }
\ No newline at end of file
@@ -24,11 +24,12 @@ import simblock.node.Node;
  */
 // Bitcoin protocol Wiki: https://en.bitcoin.it/wiki/Protocol_documentation#inv
 public class InvMessageTask extends AbstractMessageTask {
+  private static final long serialVersionUID = 1L;
 
   /**
    * Block to be advertised.
    */
-  private final Block block;
+  private Block block;
 
   /**
    * Instantiates a new Inv message task.
@@ -42,6 +43,18 @@ public class InvMessageTask extends AbstractMessageTask {
     this.block = block;
   }
 
+  /**
+   * Reuses the message task.
+   *
+   * @param from  the sender
+   * @param to    the receiver
+   * @param block the block to be advertised
+   */
+  void reset(Node from, Node to, Block block) {
+    reset(from, to);
+    this.block = block;
+  }
+
   /**
    * Gets block.
    *
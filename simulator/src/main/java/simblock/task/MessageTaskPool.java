@@ -0,0 +1,243 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.task;
+
+import java.util.ArrayDeque;
+import simblock.block.Block;
+import simblock.node.Node;
+
+/**
+ * The type Message task pool recycles the message tasks of a simulation. Millions of short lived
+ * messages are sent during a run; the ones that have been received are kept here and reused for
+ * the next message of the same type instead of being left to the garbage collector.
+ *
+ * <p>The pool is not thread safe and is disabled when the tasks are run by several threads.
+ */
+public class MessageTaskPool {
+  /**
+   * Whether the message tasks are recycled.
+   */
+  private final boolean enabled;
+
+  private final ArrayDeque<InvMessageTask> invTasks = new ArrayDeque<>();
+  private final ArrayDeque<RecMessageTask> recTasks = new ArrayDeque<>();
+  private final ArrayDeque<GetBlockTxnMessageTask> getBlockTxnTasks = new ArrayDeque<>();
+  private final ArrayDeque<CmpctBlockMessageTask> cmpctBlockTasks = new ArrayDeque<>();
+  private final ArrayDeque<BlockMessageTask> blockTasks = new ArrayDeque<>();
+
+  /**
+   * The number of message tasks instantiated.
+   */
+  private long createdCount = 0;
+
+  /**
+   * The number of message tasks reused.
+   */
+  private long recycledCount = 0;
+
+  /**
+   * Instantiates a new Message task pool.
+   *
+   * @param enabled whether the message tasks are recycled, if not new tasks are always created
+   */
+  public MessageTaskPool(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Gets an inv message task.
+   *
+   * @param from  the sender
+   * @param to    the receiver
+   * @param block the block to be advertised
+   * @return the message task
+   */
+  public InvMessageTask obtainInv(Node from, Node to, Block block) {
+    InvMessageTask task = this.invTasks.poll();
+    if (task == null) {
+      this.createdCount++;
+      return new InvMessageTask(from, to, block);
+    }
+    this.recycledCount++;
+    task.reset(from, to, block);
+    return task;
+  }
+
+  /**
+   * Gets a rec message task.
+   *
+   * @param from  the sender
+   * @param to    the receiver
+   * @param block the block to be received
+   * @return the message task
+   */
+  public RecMessageTask obtainRec(Node from, Node to, Block block) {
+    RecMessageTask task = this.recTasks.poll();
+    if (task == null) {
+      this.createdCount++;
+      return new RecMessageTask(from, to, block);
+    }
+    this.recycledCount++;
+    task.reset(from, to, block);
+    return task;
+  }
+
+  /**
+   * Gets a GetBlockTxn message task.
+   *
+   * @param from  the sender
+   * @param to    the receiver
+   * @param block the block sent as compact block
+   * @return the message task
+   */
+  public GetBlockTxnMessageTask obtainGetBlockTxn(Node from, Node to, Block block) {
+    GetBlockTxnMessageTask task = this.getBlockTxnTasks.poll();
+    if (task == null) {
+      this.createdCount++;
+      return new GetBlockTxnMessageTask(from, to, block);
+    }
+    this.recycledCount++;
+    task.reset(from, to, block);
+    return task;
+  }
+
+  /**
+   * Gets a compact block message task.
+   *
+   * @param from  the sender
+   * @param to    the receiver
+   * @param block the block instance
+   * @param delay the delay of the message transmission
+   * @return the message task
+   */
+  public CmpctBlockMessageTask obtainCmpctBlock(Node from, Node to, Block block, long delay) {
+    CmpctBlockMessageTask task = this.cmpctBlockTasks.poll();
+    if (task == null) {
+      this.createdCount++;
+      return new CmpctBlockMessageTask(from, to, block, delay);
+    }
+    this.recycledCount++;
+    task.reset(from, to, block, delay);
+    return task;
+  }
+
+  /**
+   * Gets a block message task.
+   *
+   * @param from  the sender
+   * @param to    the receiver
+   * @param block the block instance
+   * @param delay the delay of the message transmission
+   * @return the message task
+   */
+  public BlockMessageTask obtainBlock(Node from, Node to, Block block, long delay) {
+    BlockMessageTask task = this.blockTasks.poll();
+    if (task == null) {
+      this.createdCount++;
+      return new BlockMessageTask(from, to, block, delay);
+    }
+    this.recycledCount++;
+    task.reset(from, to, block, delay);
+    return task;
+  }
+
+  /**
+   * Gets a compact block message task with an interval drawn before.
+   *
+   * @param from     the sender
+   * @param to       the receiver
+   * @param block    the block instance
+   * @param interval the message sending interval
+   * @return the message task
+   */
+  public CmpctBlockMessageTask obtainCmpctBlockWithInterval(
+      Node from, Node to, Block block, long interval) {
+    CmpctBlockMessageTask task = this.cmpctBlockTasks.poll();
+    if (task == null) {
+      this.createdCount++;
+      task = new CmpctBlockMessageTask();
+    } else {
+      this.recycledCount++;
+    }
+    task.resetWithInterval(from, to, block, interval);
+    return task;
+  }
+
+  /**
+   * Gets a block message task with an interval drawn before.
+   *
+   * @param from     the sender
+   * @param to       the receiver
+   * @param block    the block instance
+   * @param interval the message sending interval
+   * @return the message task
+   */
+  public BlockMessageTask obtainBlockWithInterval(Node from, Node to, Block block, long interval) {
+    BlockMessageTask task = this.blockTasks.poll();
+    if (task == null) {
+      this.createdCount++;
+      task = new BlockMessageTask();
+    } else {
+      this.recycledCount++;
+    }
+    task.resetWithInterval(from, to, block, interval);
+    return task;
+  }
+
+  /**
+   * Keeps a message task that has been received for reuse. The task must not be referenced
+   * anymore.
+   *
+   * @param task the message task
+   */
+  public void release(AbstractMessageTask task) {
+    if (!this.enabled) {
+      return;
+    }
+    // Subclasses not known to the pool are left to the garbage collector
+    Class<?> type = task.getClass();
+    if (type == InvMessageTask.class) {
+      this.invTasks.push((InvMessageTask) task);
+    } else if (type == RecMessageTask.class) {
+      this.recTasks.push((RecMessageTask) task);
+    } else if (type == GetBlockTxnMessageTask.class) {
+      this.getBlockTxnTasks.push((GetBlockTxnMessageTask) task);
+    } else if (type == CmpctBlockMessageTask.class) {
+      this.cmpctBlockTasks.push((CmpctBlockMessageTask) task);
+    } else if (type == BlockMessageTask.class) {
+      this.blockTasks.push((BlockMessageTask) task);
+    }
+  }
+
+  /**
+   * Gets the number of message tasks instantiated.
+   *
+   * @return the number of created tasks
+   */
+  public long getCreatedCount() {
+    return this.createdCount;
+  }
+
+  /**
+   * Gets the number of message tasks reused.
+   *
+   * @return the number of recycled tasks
+   */
+  public long getRecycledCount() {
+    return this.recycledCount;
+  }
+}
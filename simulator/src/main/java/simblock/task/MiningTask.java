@@ -16,8 +16,6 @@
 
 package simblock.task;
 
-import static simblock.simulator.Timer.getCurrentTime;
-
 import java.math.BigInteger;
 import simblock.block.ProofOfWorkBlock;
 import simblock.node.Node;
@@ -26,6 +24,8 @@ import simblock.node.Node;
  * The type Mining task.
  */
 public class MiningTask extends AbstractMintingTask {
+  private static final long serialVersionUID = 1L;
+
   private final BigInteger difficulty;
 
   /**
@@ -43,9 +43,9 @@ public class MiningTask extends AbstractMintingTask {
 
   @Override
   public void run() {
+    long currentTime = getContext().getTimer().getCurrentTime();
     ProofOfWorkBlock createdBlock = new ProofOfWorkBlock(
-        (ProofOfWorkBlock) this.getParent(), this.getMinter(), getCurrentTime(),
-        this.difficulty
+        (ProofOfWorkBlock) this.getParent(), this.getMinter(), currentTime, this.difficulty
     );
     this.getMinter().receiveBlock(createdBlock);
   }
@@ -24,11 +24,12 @@ import simblock.node.Node;
  */
 
 public class RecMessageTask extends AbstractMessageTask {
+  private static final long serialVersionUID = 1L;
 
   /**
    * The block to  be received.
    */
-  private final Block block;
+  private Block block;
 
   /**
    * Instantiates a new Rec message task.
@@ -42,6 +43,18 @@ public class RecMessageTask extends AbstractMessageTask {
     this.block = block;
   }
 
+  /**
+   * Reuses the message task.
+   *
+   * @param from  the sender
+   * @param to    the receiver
+   * @param block the block to be received
+   */
+  void reset(Node from, Node to, Block block) {
+    reset(from, to);
+    this.block = block;
+  }
+
   /**
    * Gets the block to be received.
    *
@@ -51,4 +64,12 @@ public class RecMessageTask extends AbstractMessageTask {
     return this.block;
   }
 
+  /**
+   * The request is kept in the message queue of the receiving node once received, which releases
+   * it after sending the block.
+   */
+  @Override
+  public void release() {
+  }
+
 }
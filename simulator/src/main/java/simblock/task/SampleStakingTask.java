@@ -16,13 +16,13 @@
 
 package simblock.task;
 
-import static simblock.simulator.Timer.getCurrentTime;
-
 import java.math.BigInteger;
 import simblock.block.SamplePoSBlock;
 import simblock.node.Node;
 
 public class SampleStakingTask extends AbstractMintingTask {
+  private static final long serialVersionUID = 1L;
+
   private final BigInteger difficulty;
 
   public SampleStakingTask(Node minter, long interval, BigInteger difficulty) {
@@ -32,9 +32,9 @@ public class SampleStakingTask extends AbstractMintingTask {
 
   @Override
   public void run() {
+    long currentTime = getContext().getTimer().getCurrentTime();
     SamplePoSBlock createdBlock = new SamplePoSBlock(
-        (SamplePoSBlock) this.getParent(), this.getMinter(), getCurrentTime(),
-        this.difficulty
+        (SamplePoSBlock) this.getParent(), this.getMinter(), currentTime, this.difficulty
     );
     this.getMinter().receiveBlock(createdBlock);
   }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Distributed Systems Group
+ *
+ * <p>Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * <p>Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package simblock.task;
+
+import simblock.node.Node;
+
+/**
+ * The type Send next block task lets a node start sending its next queued block once the
+ * transmission of the current block has completed. It is scheduled on the sending node together
+ * with the block message, so the tasks of the receiving node never change the state of the sender.
+ */
+public class SendNextBlockTask implements Task {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The sending node.
+   */
+  private final Node node;
+
+  /**
+   * The transmission time of the current block in milliseconds.
+   */
+  private final long interval;
+
+  /**
+   * Instantiates a new Send next block task.
+   *
+   * @param node     the sending node
+   * @param interval the transmission time of the current block in milliseconds
+   */
+  public SendNextBlockTask(Node node, long interval) {
+    this.node = node;
+    this.interval = interval;
+  }
+
+  @Override
+  public long getInterval() {
+    return this.interval;
+  }
+
+  @Override
+  public Node getNode() {
+    return this.node;
+  }
+
+  /**
+   * Sends the next queued block.
+   */
+  @Override
+  public void run() {
+    this.node.sendNextBlockMessage();
+  }
+}
@@ -16,10 +16,13 @@
 
 package simblock.task;
 
+import java.io.Serializable;
+import simblock.node.Node;
+
 /**
  * The interface Task. A task can be run and has its execution duration.
  */
-public interface Task {
+public interface Task extends Serializable {
   /**
    * Gets the execution duration of the task in milliseconds of simulated time.
    *
@@ -32,4 +35,22 @@ public interface Task {
    * Run the task.
    */
   void run();
+
+  /**
+   * Gets the node the task is run on. A task with a node only changes the state of that node and
+   * can be run in parallel with the tasks of other nodes by the
+   * {@link simblock.simulator.ParallelTimer}.
+   *
+   * @return the node or null if the task may change the state of the whole simulation
+   */
+  default Node getNode() {
+    return null;
+  }
+
+  /**
+   * Releases the task once it has been run by the {@link simblock.simulator.Timer}, so it can be
+   * recycled. The task must not be used afterwards. Tasks are not recycled by default.
+   */
+  default void release() {
+  }
 }